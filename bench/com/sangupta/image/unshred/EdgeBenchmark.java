@@ -0,0 +1,126 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the per-pixel and per-edge hot paths: color conversion, edge
+ * column comparison and strip construction.
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeBenchmark {
+	
+	/**
+	 * Construct an {@link RGB} for every pixel of the image.
+	 * 
+	 */
+	@Benchmark
+	public void rgbConstruction(ShreddedImageState state, Blackhole blackhole) {
+		final int[] pixels = state.pixels;
+		for(int index = 0; index < pixels.length; index++) {
+			blackhole.consume(new RGB(pixels[index]));
+		}
+	}
+	
+	/**
+	 * Convert every pixel of the image to its U and V components.
+	 * 
+	 */
+	@Benchmark
+	public void rgbConversion(ShreddedImageState state, Blackhole blackhole) {
+		final int[] pixels = state.pixels;
+		for(int index = 0; index < pixels.length; index++) {
+			blackhole.consume(RGB.u(pixels[index]));
+			blackhole.consume(RGB.v(pixels[index]));
+		}
+	}
+	
+	/**
+	 * Compare the right edge of every strip with the left edge of the next one.
+	 * 
+	 */
+	@Benchmark
+	public double averageDistance(ShreddedImageState state) {
+		final StripEdges edges = state.edges;
+		double total = 0;
+		for(int strip = 1; strip < state.strips; strip++) {
+			total += edges.getRight(strip - 1).averageDistance(edges.getLeft(strip));
+		}
+		return total;
+	}
+	
+	/**
+	 * Same as {@link #averageDistance(ShreddedImageState)}, over edges kept off-heap.
+	 * 
+	 */
+	@Benchmark
+	public double offHeapDistance(ShreddedImageState state) {
+		final StripEdges edges = state.offHeapEdges;
+		double total = 0;
+		for(int strip = 1; strip < state.strips; strip++) {
+			total += edges.getRight(strip - 1).averageDistance(edges.getLeft(strip));
+		}
+		return total;
+	}
+	
+	/**
+	 * Same as {@link #averageDistance(ShreddedImageState)}, but bounded by the cost
+	 * of the neighbour placed next to each strip, as the refinement does.
+	 * 
+	 */
+	@Benchmark
+	public double boundedDistance(ShreddedImageState state) {
+		final StripEdges edges = state.edges;
+		final CostMatrix costs = state.costs;
+		double total = 0;
+		for(int strip = 1; strip < state.strips; strip++) {
+			total += edges.getRight(strip - 1).averageDistance(edges.getLeft(strip), costs.cost(state.order[0], state.order[1]));
+		}
+		return total;
+	}
+	
+	/**
+	 * Read the edges of all strips from the image and build the strips over them.
+	 * 
+	 */
+	@Benchmark
+	public void stripConstruction(ShreddedImageState state, Blackhole blackhole) {
+		StripEdges edges = StripEdges.read(state.shredded, ShreddedImageState.STRIP_WIDTH);
+		for(int strip = 0; strip < state.strips; strip++) {
+			final int leftX = strip * ShreddedImageState.STRIP_WIDTH;
+			blackhole.consume(new ImageStrip(strip, state.shredded.getSubimage(leftX, 0, ShreddedImageState.STRIP_WIDTH, state.height), edges, strip));
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state holding a synthetic shredded image of the given height and
+ * strip count, together with everything derived from it that the individual
+ * benchmarks need as input.
+ * 
+ */
+@State(Scope.Benchmark)
+public class ShreddedImageState {
+	
+	/**
+	 * Width of every strip of the synthetic image
+	 */
+	public static final int STRIP_WIDTH = 8;
+	
+	@Param({ "256", "1024", "4096" })
+	public int height;
+	
+	@Param({ "16", "128", "512" })
+	public int strips;
+	
+	public BufferedImage shredded;
+	
+	public int[] pixels;
+	
+	public StripEdges edges;
+	
+	public OffHeapArena arena;
+	
+	public StripEdges offHeapEdges;
+	
+	public CostMatrix costs;
+	
+	public int[] order;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		ImageUnshred.setLogsEnabled(false);
+		
+		BufferedImage original = createImage(this.strips * STRIP_WIDTH, this.height, 42);
+		this.shredded = ImageShred.shred(original, STRIP_WIDTH);
+		
+		this.pixels = this.shredded.getRGB(0, 0, this.shredded.getWidth(), this.height, null, 0, this.shredded.getWidth());
+		this.edges = StripEdges.read(this.shredded, STRIP_WIDTH);
+		this.arena = new OffHeapArena();
+		this.offHeapEdges = StripEdges.read(this.shredded, STRIP_WIDTH, this.arena);
+		this.costs = CostMatrix.compute(this.edges);
+		this.order = new GreedyOrdering().order(this.costs, Long.MAX_VALUE);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.arena.close();
+	}
+	
+	/**
+	 * Create a smooth synthetic image with some random blobs, which gives the
+	 * matcher realistic edge statistics.
+	 * 
+	 */
+	static BufferedImage createImage(int width, int height, long seed) {
+		Random random = new Random(seed);
+		final double phase = random.nextDouble() * Math.PI;
+		
+		int[] pixels = new int[width * height];
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				final double a = Math.sin(x / 37.0 + phase) * Math.cos(y / 23.0) + Math.sin((x + y) / 51.0);
+				final double b = Math.cos(x / 19.0 - y / 41.0 + phase);
+				final int red = clamp(128 + 60 * a + random.nextInt(8));
+				final int green = clamp(128 + 60 * b + random.nextInt(8));
+				final int blue = clamp(100 + 100.0 * y / height + 25 * a * b);
+				pixels[y * width + x] = (red << 16) | (green << 8) | blue;
+			}
+		}
+		
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, width, height, pixels, 0, width);
+		return image;
+	}
+	
+	private static int clamp(double value) {
+		return Math.max(0, Math.min(255, (int) value));
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the phases of an unshred run: strip width detection, cost matrix
+ * computation, the greedy matching loop and reconstruction.
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnshredBenchmark {
+	
+	@Benchmark
+	public int findStripWidth(ShreddedImageState state) {
+		ImageUnshred unshredder = new ImageUnshred();
+		unshredder.setImage(state.shredded);
+		unshredder.findStripWidth();
+		return unshredder.getStripWidth();
+	}
+	
+	@Benchmark
+	public CostMatrix costMatrix(ShreddedImageState state) {
+		return CostMatrix.compute(state.edges);
+	}
+	
+	/**
+	 * Coarse-to-fine matching, which only prunes on the taller images.
+	 * 
+	 */
+	@Benchmark
+	public CostMatrix prunedCostMatrix(ShreddedImageState state) {
+		return CostMatrix.compute(state.edges, UnshredOptions.DEFAULT_CANDIDATES, ForkJoinPool.commonPool());
+	}
+	
+	@Benchmark
+	public int[] greedyMatching(ShreddedImageState state) {
+		return new GreedyOrdering().order(state.costs, Long.MAX_VALUE);
+	}
+	
+	@Benchmark
+	public BufferedImage reconstruction(ShreddedImageState state) {
+		return RasterCopy.permuteStrips(state.shredded, state.order, ShreddedImageState.STRIP_WIDTH);
+	}
+
+}
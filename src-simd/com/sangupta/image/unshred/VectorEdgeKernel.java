@@ -0,0 +1,174 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Edge comparison kernel built on the <code>jdk.incubator.vector</code> API. The
+ * 8-bit chroma values are widened to int lanes, the U and V deltas and their
+ * squares are computed in integer arithmetic, and only the final lane-wise square
+ * root runs on float vectors. Lane sums are folded into a double every block of
+ * rows so that very tall columns do not lose precision.
+ * 
+ * This class is compiled separately and only loaded through {@link EdgeKernel#getDefault()}.
+ * 
+ */
+public class VectorEdgeKernel extends EdgeKernel {
+	
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	
+	/**
+	 * Bytes are loaded at the same shape as the int lanes and widened a quarter at a time
+	 */
+	private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+	
+	private static final int PARTS = BYTES.length() / INTS.length();
+	
+	/**
+	 * Number of rows accumulated in float lanes before folding into the total
+	 */
+	private static final int BLOCK = 1024;
+
+	@Override
+	public double sum(byte[] u1, byte[] v1, int offset1, byte[] u2, byte[] v2, int offset2, int length) {
+		final int lanes = BYTES.length();
+		final int bound = BYTES.loopBound(length);
+		
+		double distance = 0;
+		int i = 0;
+		while(i < bound) {
+			final int blockEnd = Math.min(bound, i + BLOCK);
+			FloatVector sum = FloatVector.zero(FLOATS);
+			for(; i < blockEnd; i += lanes) {
+				ByteVector bu1 = ByteVector.fromArray(BYTES, u1, offset1 + i);
+				ByteVector bv1 = ByteVector.fromArray(BYTES, v1, offset1 + i);
+				ByteVector bu2 = ByteVector.fromArray(BYTES, u2, offset2 + i);
+				ByteVector bv2 = ByteVector.fromArray(BYTES, v2, offset2 + i);
+				sum = add(sum, bu1, bv1, bu2, bv2);
+			}
+			distance += sum.reduceLanes(VectorOperators.ADD);
+		}
+		
+		// scalar tail
+		for(; i < length; i++) {
+			distance += RGB.distance(u1[offset1 + i] & 0xff, v1[offset1 + i] & 0xff, u2[offset2 + i] & 0xff, v2[offset2 + i] & 0xff);
+		}
+		
+		return distance;
+	}
+	
+	@Override
+	public double sum(ByteBuffer u1, ByteBuffer v1, int offset1, ByteBuffer u2, ByteBuffer v2, int offset2, int length) {
+		final ByteOrder order = ByteOrder.nativeOrder();
+		final int lanes = BYTES.length();
+		final int bound = BYTES.loopBound(length);
+		
+		double distance = 0;
+		int i = 0;
+		while(i < bound) {
+			final int blockEnd = Math.min(bound, i + BLOCK);
+			FloatVector sum = FloatVector.zero(FLOATS);
+			for(; i < blockEnd; i += lanes) {
+				ByteVector bu1 = ByteVector.fromByteBuffer(BYTES, u1, offset1 + i, order);
+				ByteVector bv1 = ByteVector.fromByteBuffer(BYTES, v1, offset1 + i, order);
+				ByteVector bu2 = ByteVector.fromByteBuffer(BYTES, u2, offset2 + i, order);
+				ByteVector bv2 = ByteVector.fromByteBuffer(BYTES, v2, offset2 + i, order);
+				sum = add(sum, bu1, bv1, bu2, bv2);
+			}
+			distance += sum.reduceLanes(VectorOperators.ADD);
+		}
+		
+		// scalar tail
+		for(; i < length; i++) {
+			distance += RGB.distance(u1.get(offset1 + i) & 0xff, v1.get(offset1 + i) & 0xff, u2.get(offset2 + i) & 0xff, v2.get(offset2 + i) & 0xff);
+		}
+		
+		return distance;
+	}
+	
+	@Override
+	public double sum(byte[] u1, byte[] v1, int offset1, ByteBuffer u2, ByteBuffer v2, int offset2, int length) {
+		final ByteOrder order = ByteOrder.nativeOrder();
+		final int lanes = BYTES.length();
+		final int bound = BYTES.loopBound(length);
+		
+		double distance = 0;
+		int i = 0;
+		while(i < bound) {
+			final int blockEnd = Math.min(bound, i + BLOCK);
+			FloatVector sum = FloatVector.zero(FLOATS);
+			for(; i < blockEnd; i += lanes) {
+				ByteVector bu1 = ByteVector.fromArray(BYTES, u1, offset1 + i);
+				ByteVector bv1 = ByteVector.fromArray(BYTES, v1, offset1 + i);
+				ByteVector bu2 = ByteVector.fromByteBuffer(BYTES, u2, offset2 + i, order);
+				ByteVector bv2 = ByteVector.fromByteBuffer(BYTES, v2, offset2 + i, order);
+				sum = add(sum, bu1, bv1, bu2, bv2);
+			}
+			distance += sum.reduceLanes(VectorOperators.ADD);
+		}
+		
+		// scalar tail
+		for(; i < length; i++) {
+			distance += RGB.distance(u1[offset1 + i] & 0xff, v1[offset1 + i] & 0xff, u2.get(offset2 + i) & 0xff, v2.get(offset2 + i) & 0xff);
+		}
+		
+		return distance;
+	}
+	
+	/**
+	 * Add the distances between the pixels of the given vectors to the lane sums.
+	 * 
+	 */
+	private static FloatVector add(FloatVector sum, ByteVector u1, ByteVector v1, ByteVector u2, ByteVector v2) {
+		for(int part = 0; part < PARTS; part++) {
+			IntVector du = widen(u1, part).sub(widen(u2, part));
+			IntVector dv = widen(v1, part).sub(widen(v2, part));
+			IntVector square = du.mul(du).add(dv.mul(dv));
+			sum = sum.add(((FloatVector) square.convert(VectorOperators.I2F, 0)).sqrt());
+		}
+		return sum;
+	}
+	
+	/**
+	 * Widen one quarter of the given unsigned bytes to int lanes.
+	 * 
+	 * @param bytes
+	 * @param part
+	 * @return
+	 */
+	private static IntVector widen(ByteVector bytes, int part) {
+		return ((IntVector) bytes.convertShape(VectorOperators.B2I, INTS, part)).and(0xff);
+	}
+
+	@Override
+	public String getName() {
+		return "vector/" + INTS.length() + "x" + INTS.elementSize();
+	}
+
+}
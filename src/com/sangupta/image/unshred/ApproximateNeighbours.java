@@ -0,0 +1,250 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The neighbours of every strip on one side, found through a {@link VantagePointTree}
+ * over the edge signatures instead of a full cost matrix. Rankings are built lazily,
+ * a batch at a time: the tree is asked for the next closest signatures that are
+ * neither placed nor ranked yet, and the strips found are compared at full
+ * resolution and sorted by their exact cost. Each batch is sorted, but a later
+ * batch may hold a strip cheaper than the last of an earlier one when the
+ * signatures misjudge it.
+ * 
+ * Instances are bound to the set of strips placed by a single run, which may only
+ * grow, and are not thread-safe.
+ * 
+ */
+public class ApproximateNeighbours extends StripNeighbours {
+	
+	/**
+	 * Number of neighbours ranked when a strip is first asked for
+	 */
+	private static final int FIRST_BATCH = 8;
+	
+	private final StripEdges edges;
+	
+	private final EdgeSignature signature;
+	
+	private VantagePointTree tree;
+	
+	private final long seed;
+	
+	/**
+	 * Number of strips placed when the tree was last built
+	 */
+	private int placedAtBuild = 0;
+	
+	/**
+	 * Whether the neighbours are the strips placed before (to the left of) a strip
+	 */
+	private final boolean before;
+	
+	private final int checks;
+	
+	private final BitSet excluded;
+	
+	private final EdgeKernel kernel = EdgeKernel.getDefault();
+	
+	private final int[][] rankings;
+	
+	private final float[][] costs;
+	
+	private final int[] counts;
+	
+	/**
+	 * Whether a strip has no more neighbours left to rank
+	 */
+	private final BitSet exhausted;
+	
+	private long comparisons = 0;
+	
+	private ApproximateNeighbours(StripEdges edges, EdgeSignature signature, boolean before, int checks, BitSet excluded, long seed) {
+		this.edges = edges;
+		this.signature = signature;
+		this.seed = seed;
+		this.before = before;
+		this.checks = checks;
+		this.excluded = excluded;
+		
+		// neighbours after a strip are matched by their left edge, and the other way round
+		this.tree = new VantagePointTree(signature, before, seed);
+		
+		final int size = edges.getStrips();
+		this.rankings = new int[size][];
+		this.costs = new float[size][];
+		this.counts = new int[size];
+		this.exhausted = new BitSet(size);
+	}
+	
+	/**
+	 * Neighbours that can be placed after (to the right of) each strip.
+	 * 
+	 * @param edges
+	 * @param signature
+	 * @param checks
+	 *            maximum number of signature distances computed per search
+	 * 
+	 * @param used
+	 *            the set of strips placed by the run
+	 * 
+	 * @return
+	 */
+	public static ApproximateNeighbours after(StripEdges edges, EdgeSignature signature, int checks, BitSet used) {
+		return new ApproximateNeighbours(edges, signature, false, checks, used, 0);
+	}
+	
+	/**
+	 * Neighbours that can be placed before (to the left of) each strip.
+	 * 
+	 * @param edges
+	 * @param signature
+	 * @param checks
+	 *            maximum number of signature distances computed per search
+	 * 
+	 * @param used
+	 *            the set of strips placed by the run
+	 * 
+	 * @return
+	 */
+	public static ApproximateNeighbours before(StripEdges edges, EdgeSignature signature, int checks, BitSet used) {
+		return new ApproximateNeighbours(edges, signature, true, checks, used, 1);
+	}
+
+	@Override
+	public int get(int strip, int rank) {
+		while(this.counts[strip] <= rank) {
+			if(!extend(strip)) {
+				return -1;
+			}
+		}
+		return this.rankings[strip][rank];
+	}
+
+	@Override
+	public double cost(int strip, int rank) {
+		get(strip, rank);
+		return this.costs[strip][rank];
+	}
+
+	@Override
+	public int getSize() {
+		return this.edges.getStrips();
+	}
+	
+	/**
+	 * Append the next batch of neighbours to the ranking of the strip.
+	 * 
+	 * @param strip
+	 * @return <code>false</code> if no neighbour was left to rank
+	 */
+	private boolean extend(int strip) {
+		if(this.exhausted.get(strip)) {
+			return false;
+		}
+		
+		final int count = this.counts[strip];
+		final int batch = Math.max(FIRST_BATCH, count);
+		
+		// once most strips in the tree are placed, searches mostly wade through them
+		final int placed = this.excluded.cardinality();
+		if(placed - this.placedAtBuild > this.tree.getSize() / 2) {
+			rebuild(placed);
+		}
+		
+		// skip the strips placed and those already ranked
+		BitSet skipped = this.excluded;
+		if(count > 0) {
+			skipped = (BitSet) this.excluded.clone();
+			for(int index = 0; index < count; index++) {
+				skipped.set(this.rankings[strip][index]);
+			}
+		}
+		
+		// with a bounded search the tree may miss the strips left, so widen it until something is found
+		int[] found = null;
+		for(long checks = Math.max(1l, this.checks); found == null || found.length == 0; checks *= 4) {
+			found = this.tree.search(strip, !this.before, batch, (int) Math.min(Integer.MAX_VALUE, checks), skipped);
+			if(checks >= this.tree.getSize()) {
+				break;
+			}
+		}
+		
+		if(found.length == 0) {
+			this.exhausted.set(strip);
+			return false;
+		}
+		
+		// rank the batch by its exact costs
+		long[] keys = new long[found.length];
+		for(int index = 0; index < found.length; index++) {
+			keys[index] = ((long) Float.floatToRawIntBits(exactCost(strip, found[index])) << 32) | found[index];
+		}
+		Arrays.sort(keys);
+		
+		if(this.rankings[strip] == null || this.rankings[strip].length < count + keys.length) {
+			final int capacity = count + Math.max(keys.length, count);
+			this.rankings[strip] = this.rankings[strip] == null ? new int[capacity] : Arrays.copyOf(this.rankings[strip], capacity);
+			this.costs[strip] = this.costs[strip] == null ? new float[capacity] : Arrays.copyOf(this.costs[strip], capacity);
+		}
+		for(int index = 0; index < keys.length; index++) {
+			this.rankings[strip][count + index] = (int) keys[index];
+			this.costs[strip][count + index] = Float.intBitsToFloat((int) (keys[index] >>> 32));
+		}
+		this.counts[strip] = count + keys.length;
+		return true;
+	}
+	
+	/**
+	 * Number of pairs of strips compared at full resolution so far.
+	 * 
+	 * @return
+	 */
+	public long getComparisons() {
+		return this.comparisons;
+	}
+	
+	/**
+	 * Rebuild the tree over the strips not placed yet.
+	 * 
+	 * @param placed
+	 */
+	private void rebuild(int placed) {
+		final int size = getSize();
+		int[] strips = new int[size - placed];
+		int index = 0;
+		for(int strip = this.excluded.nextClearBit(0); strip < size; strip = this.excluded.nextClearBit(strip + 1)) {
+			strips[index++] = strip;
+		}
+		this.tree = new VantagePointTree(this.signature, this.before, strips, this.seed);
+		this.placedAtBuild = placed;
+	}
+	
+	private float exactCost(int strip, int neighbour) {
+		this.comparisons++;
+		if(this.before) {
+			return (float) this.edges.getRight(neighbour).averageDistance(this.edges.getLeft(strip), this.kernel);
+		}
+		return (float) this.edges.getRight(strip).averageDistance(this.edges.getLeft(neighbour), this.kernel);
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.BitSet;
+
+/**
+ * Orders strips without a full cost matrix, for strip counts where one would not
+ * fit in memory or take too long to compute. The edges are reduced to signatures
+ * of at most {@link #SIGNATURE_BLOCKS} blocks, indexed in vantage-point trees,
+ * and the greedy placer walks the candidates the trees return, compared at full
+ * resolution. The number of signature distances computed per search is the knob
+ * between speed and recall.
+ * 
+ */
+public class ApproximateOrdering {
+	
+	/**
+	 * Default number of strips from which the approximate ordering is used, read
+	 * from the system property <code>image.unshred.ann.strips</code>
+	 */
+	public static final int DEFAULT_MIN_STRIPS = Integer.getInteger("image.unshred.ann.strips", 4096);
+	
+	/**
+	 * Default number of signature distances per search, read from the system
+	 * property <code>image.unshred.ann.checks</code>. Values below 1 are ignored.
+	 */
+	public static final int DEFAULT_CHECKS = readChecks();
+	
+	/**
+	 * Maximum number of blocks in an edge signature
+	 */
+	private static final int SIGNATURE_BLOCKS = 32;
+	
+	private final int checks;
+	
+	private long comparisons = 0;
+	
+	public ApproximateOrdering() {
+		this(DEFAULT_CHECKS);
+	}
+	
+	/**
+	 * @param checks
+	 *            number of signature distances computed per search, higher values
+	 *            find the best neighbours more often but take longer
+	 */
+	public ApproximateOrdering(int checks) {
+		if(checks < 1) {
+			throw new IllegalArgumentException("Number of checks must be at least 1: " + checks);
+		}
+		
+		this.checks = checks;
+	}
+	
+	private static int readChecks() {
+		final int checks = Integer.getInteger("image.unshred.ann.checks", 256);
+		return checks < 1 ? 256 : checks;
+	}
+	
+	/**
+	 * Compute an order of all strips from their edges.
+	 * 
+	 * @param edges
+	 * @return
+	 */
+	public int[] order(StripEdges edges) {
+		final int blockRows = Math.max(1, (edges.getHeight() + SIGNATURE_BLOCKS - 1) / SIGNATURE_BLOCKS);
+		EdgeSignature signature = EdgeSignature.compute(edges, blockRows);
+		
+		BitSet used = new BitSet(edges.getStrips());
+		ApproximateNeighbours after = ApproximateNeighbours.after(edges, signature, this.checks, used);
+		ApproximateNeighbours before = ApproximateNeighbours.before(edges, signature, this.checks, used);
+		int[] order = new GreedyOrdering().order(after, before, used);
+		
+		this.comparisons = after.getComparisons() + before.getComparisons();
+		return order;
+	}
+	
+	/**
+	 * Number of pairs of strips compared at full resolution by the last call to
+	 * {@link #order(StripEdges)}.
+	 * 
+	 * @return
+	 */
+	public long getComparisons() {
+		return this.comparisons;
+	}
+
+}
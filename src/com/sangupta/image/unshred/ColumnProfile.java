@@ -0,0 +1,123 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The column-boundary difference profile of an image: entry <code>x</code> holds
+ * the average distance between column <code>x</code> and column <code>x + 1</code>.
+ * 
+ * The profile is computed in one pass over the image. The columns are split into
+ * ranges that are processed in parallel; each range reads its pixels row by row,
+ * converts every pixel to U/V exactly once and then compares neighbouring columns.
+ * 
+ */
+public class ColumnProfile {
+	
+	/**
+	 * Smallest number of columns handled by a single task
+	 */
+	private static final int MIN_COLUMNS = 16;
+	
+	/**
+	 * Compute the profile of the given image using the common fork/join pool.
+	 * 
+	 * @param image
+	 * @return an array of <code>width - 1</code> distances
+	 */
+	public static double[] compute(BufferedImage image) {
+		return compute(image, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Compute the profile of the given image using the given pool.
+	 * 
+	 * @param image
+	 * @param pool
+	 * @return an array of <code>width - 1</code> distances
+	 */
+	public static double[] compute(BufferedImage image, ForkJoinPool pool) {
+		final int width = image.getWidth();
+		double[] profile = new double[Math.max(0, width - 1)];
+		if(width < 2) {
+			return profile;
+		}
+		
+		final int threshold = Math.max(MIN_COLUMNS, width / (pool.getParallelism() * 4));
+		pool.invoke(new RangeTask(image, profile, 0, width - 1, threshold));
+		return profile;
+	}
+	
+	/**
+	 * Computes the profile entries <code>[from, to)</code>, which needs the columns
+	 * <code>from</code> to <code>to</code> inclusive.
+	 * 
+	 */
+	private static class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		
+		private final BufferedImage image;
+		
+		private final double[] profile;
+		
+		private final int from, to, threshold;
+		
+		RangeTask(BufferedImage image, double[] profile, int from, int to, int threshold) {
+			this.image = image;
+			this.profile = profile;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > threshold) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new RangeTask(image, profile, from, middle, threshold), new RangeTask(image, profile, middle, to, threshold));
+				return;
+			}
+			
+			// read the columns row by row into column-major planes
+			final int height = image.getHeight();
+			final int columns = to - from + 1;
+			byte[] u = new byte[columns * height];
+			byte[] v = new byte[columns * height];
+			int[] row = new int[columns];
+			for(int y = 0; y < height; y++) {
+				image.getRGB(from, y, columns, 1, row, 0, columns);
+				for(int column = 0; column < columns; column++) {
+					u[column * height + y] = (byte) RGB.u(row[column]);
+					v[column * height + y] = (byte) RGB.v(row[column]);
+				}
+			}
+			
+			final EdgeKernel kernel = EdgeKernel.getDefault();
+			for(int column = 0; column < columns - 1; column++) {
+				profile[from + column] = kernel.sum(u, v, column * height, u, v, (column + 1) * height, height) / height;
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,541 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An N x N matrix of strip dissimilarities. The entry at <code>(i, j)</code> is the
+ * average distance between the right edge of strip <code>i</code> and the left edge
+ * of strip <code>j</code>, that is the cost of placing strip <code>j</code> immediately
+ * to the right of strip <code>i</code>.
+ * 
+ * The matrix is computed once, in parallel, by splitting it into square tiles that
+ * are handed to a fork/join pool.
+ * 
+ * For tall images with many strips the matrix can be computed coarse to fine
+ * instead: every entry first gets a cheap lower bound from an {@link EdgeSignature},
+ * and then each row and each column refines its entries in order of increasing
+ * bound until its <code>k</code> best neighbours are known exactly. The entries
+ * that were never refined keep a lower bound which is no smaller than the
+ * <code>k</code>-th best exact cost of their row and column. As such a bound may
+ * still undercut the exact cost, {@link #order(StripOrdering, long)} computes every
+ * pair an ordering engine places next to each other exactly, and orders again
+ * until the order only uses pairs whose cost is exact.
+ * 
+ * Given an {@link OffHeapArena}, the costs and the exact flags are kept in buffers
+ * allocated from it instead of the heap.
+ * 
+ */
+public class CostMatrix {
+	
+	/**
+	 * Tiles smaller than this along both sides are computed directly
+	 */
+	private static final int TILE_SIZE = 32;
+	
+	/**
+	 * Number of rows summed into one block of the coarse signature
+	 */
+	private static final int BLOCK_ROWS = 16;
+	
+	/**
+	 * Images shorter than this are always compared exhaustively
+	 */
+	private static final int MIN_PRUNED_HEIGHT = 1024;
+	
+	/**
+	 * Lines smaller than this are refined directly
+	 */
+	private static final int LINE_CHUNK = 8;
+	
+	private final int size;
+	
+	private final float[] costs;
+	
+	/**
+	 * Which entries hold an exact cost, or <code>null</code> when all of them do
+	 */
+	private final boolean[] exact;
+	
+	/**
+	 * Off-heap costs and exact flags, used when the arrays are <code>null</code>
+	 */
+	private final FloatBuffer costBuffer;
+	
+	private final ByteBuffer exactBuffer;
+	
+	private final boolean pruned;
+	
+	private final OffHeapArena arena;
+	
+	private final StripEdges edges;
+	
+	private CostMatrix(int size, StripEdges edges, boolean pruned, OffHeapArena arena) {
+		this.size = size;
+		this.edges = edges;
+		this.pruned = pruned;
+		this.arena = arena;
+		
+		if(arena == null) {
+			this.costs = new float[size * size];
+			this.exact = pruned ? new boolean[size * size] : null;
+			this.costBuffer = null;
+			this.exactBuffer = null;
+		} else {
+			final long entries = (long) size * size;
+			if(entries * 4 > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many strips for an off-heap cost matrix: " + size);
+			}
+			
+			this.costs = null;
+			this.exact = null;
+			this.costBuffer = arena.allocate((int) entries * 4).asFloatBuffer();
+			this.exactBuffer = pruned ? arena.allocate((int) entries) : null;
+		}
+	}
+	
+	/**
+	 * Compute the cost matrix for the given strip edges using the common
+	 * fork/join pool.
+	 * 
+	 * @param edges
+	 * @return
+	 */
+	public static CostMatrix compute(StripEdges edges) {
+		return compute(edges, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Compute the cost matrix for the given strip edges using the given pool.
+	 * 
+	 * @param edges
+	 * @param pool
+	 * @return
+	 */
+	public static CostMatrix compute(StripEdges edges, ForkJoinPool pool) {
+		return compute(edges, pool, null);
+	}
+	
+	/**
+	 * Compute the cost matrix for the given strip edges using the given pool, into
+	 * memory allocated from the given arena, or the heap if <code>null</code>.
+	 * 
+	 * @param edges
+	 * @param pool
+	 * @param arena
+	 * @return
+	 */
+	public static CostMatrix compute(StripEdges edges, ForkJoinPool pool, OffHeapArena arena) {
+		final int size = edges.getStrips();
+		CostMatrix matrix = new CostMatrix(size, edges, false, arena);
+		pool.invoke(new TileTask(matrix, edges, null, 0, size, 0, size));
+		return matrix;
+	}
+	
+	/**
+	 * Compute the cost matrix coarse to fine, certifying the given number of best
+	 * neighbours of every strip on both sides. Falls back to the exhaustive
+	 * computation when <code>candidates</code> is zero or when the image is too
+	 * short or has too few strips for pruning to pay off.
+	 * 
+	 * @param edges
+	 * @param candidates
+	 * @param pool
+	 * @return
+	 */
+	public static CostMatrix compute(StripEdges edges, int candidates, ForkJoinPool pool) {
+		return compute(edges, candidates, pool, null);
+	}
+	
+	/**
+	 * Compute the cost matrix coarse to fine, into memory allocated from the given
+	 * arena, or the heap if <code>null</code>.
+	 * 
+	 * @param edges
+	 * @param candidates
+	 * @param pool
+	 * @param arena
+	 * @return
+	 */
+	public static CostMatrix compute(StripEdges edges, int candidates, ForkJoinPool pool, OffHeapArena arena) {
+		final int size = edges.getStrips();
+		if(candidates <= 0 || edges.getHeight() < MIN_PRUNED_HEIGHT || size <= 4 * candidates) {
+			return compute(edges, pool, arena);
+		}
+		
+		// lower bounds for all entries
+		CostMatrix matrix = new CostMatrix(size, edges, true, arena);
+		EdgeSignature signature = EdgeSignature.compute(edges, BLOCK_ROWS);
+		pool.invoke(new TileTask(matrix, edges, signature, 0, size, 0, size));
+		
+		// certify the best neighbours of every row, then of every column
+		float[] rowBounds = new float[size];
+		float[] columnBounds = new float[size];
+		pool.invoke(new RefineTask(matrix, candidates, false, rowBounds, 0, size));
+		pool.invoke(new RefineTask(matrix, candidates, true, columnBounds, 0, size));
+		
+		// lift the remaining bounds as far as the refinement allows
+		for(int row = 0; row < size; row++) {
+			for(int column = 0; column < size; column++) {
+				final int index = row * size + column;
+				if(!matrix.isExact(index)) {
+					matrix.set(index, Math.max(matrix.get(index), Math.max(rowBounds[row], columnBounds[column])));
+				}
+			}
+		}
+		
+		return matrix;
+	}
+	
+	/**
+	 * Cost of placing strip <code>right</code> immediately after strip <code>left</code>.
+	 * 
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	public double cost(int left, int right) {
+		return get(left * this.size + right);
+	}
+
+	/**
+	 * Exact cost of placing strip <code>right</code> immediately after strip
+	 * <code>left</code>, computing it now if the matrix only holds a bound.
+	 * 
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	public double exactCost(int left, int right) {
+		if(isExact(left, right)) {
+			return cost(left, right);
+		}
+		
+		return this.edges.getRight(left).averageDistance(this.edges.getLeft(right));
+	}
+	
+	/**
+	 * Order the strips with the given engine within the given budget. On a matrix
+	 * computed coarse to fine, the pairs of the order that only hold a lower bound
+	 * are then computed exactly and the strips ordered again, until the order only
+	 * uses exact pairs or the budget runs out.
+	 * 
+	 * @param ordering
+	 * @param budgetMillis
+	 * @return
+	 */
+	public int[] order(StripOrdering ordering, long budgetMillis) {
+		final long deadline = System.currentTimeMillis() + budgetMillis;
+		int[] order = ordering.order(this, budgetMillis);
+		while(certify(order) > 0) {
+			final long remaining = deadline - System.currentTimeMillis();
+			if(remaining <= 0) {
+				break;
+			}
+			order = ordering.order(this, remaining);
+		}
+		return order;
+	}
+	
+	/**
+	 * Compute the pairs of the given path that only hold a lower bound exactly,
+	 * so that an ordering engine run again sees their actual cost.
+	 * 
+	 * @param order
+	 * @return the number of pairs computed
+	 */
+	public int certify(int[] order) {
+		if(!this.pruned) {
+			return 0;
+		}
+		
+		final EdgeKernel kernel = EdgeKernel.getDefault();
+		int computed = 0;
+		for(int position = 1; position < order.length; position++) {
+			final int index = order[position - 1] * this.size + order[position];
+			if(!isExact(index)) {
+				set(index, (float) this.edges.getRight(order[position - 1]).averageDistance(this.edges.getLeft(order[position]), kernel));
+				setExact(index);
+				computed++;
+			}
+		}
+		return computed;
+	}
+	
+	/**
+	 * Whether the entry holds an exact cost rather than a lower bound.
+	 * 
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	public boolean isExact(int left, int right) {
+		return isExact(left * this.size + right);
+	}
+	
+	/**
+	 * Number of pairs of strips that were compared at full resolution.
+	 * 
+	 * @return
+	 */
+	public long getComparisons() {
+		if(!this.pruned) {
+			return (long) this.size * (this.size - 1);
+		}
+		
+		long comparisons = 0;
+		final int entries = this.size * this.size;
+		for(int index = 0; index < entries; index++) {
+			if(isExact(index) && (index / this.size) != (index % this.size)) {
+				comparisons++;
+			}
+		}
+		return comparisons;
+	}
+
+	public int getSize() {
+		return size;
+	}
+	
+	private float get(int index) {
+		if(this.costs != null) {
+			return this.costs[index];
+		}
+		
+		this.arena.checkOpen();
+		return this.costBuffer.get(index);
+	}
+	
+	private void set(int index, float cost) {
+		if(this.costs != null) {
+			this.costs[index] = cost;
+		} else {
+			this.arena.checkOpen();
+			this.costBuffer.put(index, cost);
+		}
+	}
+	
+	private boolean isExact(int index) {
+		if(!this.pruned) {
+			return true;
+		}
+		
+		if(this.exact != null) {
+			return this.exact[index];
+		}
+		
+		this.arena.checkOpen();
+		return this.exactBuffer.get(index) != 0;
+	}
+	
+	private void setExact(int index) {
+		if(this.exact != null) {
+			this.exact[index] = true;
+		} else {
+			this.arena.checkOpen();
+			this.exactBuffer.put(index, (byte) 1);
+		}
+	}
+	
+	/**
+	 * Computes one rectangular tile of the matrix, splitting it along its longer
+	 * side until it is small enough. When given a signature the tile is filled
+	 * with lower bounds instead of exact costs.
+	 * 
+	 */
+	private static class TileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CostMatrix matrix;
+		
+		private final StripEdges edges;
+		
+		private final EdgeSignature signature;
+		
+		private final int rowStart, rowEnd, columnStart, columnEnd;
+		
+		TileTask(CostMatrix matrix, StripEdges edges, EdgeSignature signature, int rowStart, int rowEnd, int columnStart, int columnEnd) {
+			this.matrix = matrix;
+			this.edges = edges;
+			this.signature = signature;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+			this.columnStart = columnStart;
+			this.columnEnd = columnEnd;
+		}
+		
+		@Override
+		protected void compute() {
+			final int rows = rowEnd - rowStart, columns = columnEnd - columnStart;
+			if(rows > TILE_SIZE || columns > TILE_SIZE) {
+				if(rows >= columns) {
+					final int middle = rowStart + rows / 2;
+					invokeAll(new TileTask(matrix, edges, signature, rowStart, middle, columnStart, columnEnd),
+							  new TileTask(matrix, edges, signature, middle, rowEnd, columnStart, columnEnd));
+				} else {
+					final int middle = columnStart + columns / 2;
+					invokeAll(new TileTask(matrix, edges, signature, rowStart, rowEnd, columnStart, middle),
+							  new TileTask(matrix, edges, signature, rowStart, rowEnd, middle, columnEnd));
+				}
+				return;
+			}
+			
+			if(signature != null) {
+				bound();
+				return;
+			}
+			
+			PixelColumn[] lefts = new PixelColumn[columns];
+			for(int column = columnStart; column < columnEnd; column++) {
+				lefts[column - columnStart] = edges.getLeft(column);
+			}
+			
+			final EdgeKernel kernel = EdgeKernel.getDefault();
+			final int size = matrix.size;
+			for(int row = rowStart; row < rowEnd; row++) {
+				PixelColumn right = edges.getRight(row);
+				for(int column = columnStart; column < columnEnd; column++) {
+					float cost;
+					if(row == column) {
+						cost = Float.POSITIVE_INFINITY;
+					} else {
+						cost = (float) right.averageDistance(lefts[column - columnStart], kernel);
+					}
+					matrix.set(row * size + column, cost);
+				}
+			}
+		}
+		
+		private void bound() {
+			final int size = matrix.size;
+			for(int row = rowStart; row < rowEnd; row++) {
+				for(int column = columnStart; column < columnEnd; column++) {
+					final int index = row * size + column;
+					if(row == column) {
+						matrix.set(index, Float.POSITIVE_INFINITY);
+						matrix.setExact(index);
+					} else {
+						matrix.set(index, (float) signature.lowerBound(row, column));
+					}
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * Refines a range of rows, or of columns, of a matrix that holds lower bounds.
+	 * Each line is walked in order of increasing bound, computing exact costs,
+	 * until the next bound is no smaller than the <code>k</code>-th best exact cost
+	 * found so far. That cost is recorded as the bound of the line.
+	 * 
+	 */
+	private static class RefineTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		
+		private final CostMatrix matrix;
+		
+		private final int candidates;
+		
+		private final boolean columns;
+		
+		private final float[] bounds;
+		
+		private final int from, to;
+		
+		RefineTask(CostMatrix matrix, int candidates, boolean columns, float[] bounds, int from, int to) {
+			this.matrix = matrix;
+			this.candidates = candidates;
+			this.columns = columns;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > LINE_CHUNK) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new RefineTask(matrix, candidates, columns, bounds, from, middle),
+						  new RefineTask(matrix, candidates, columns, bounds, middle, to));
+				return;
+			}
+			
+			final int size = matrix.size;
+			final EdgeKernel kernel = EdgeKernel.getDefault();
+			long[] keys = new long[size];
+			float[] best = new float[candidates];
+			for(int line = from; line < to; line++) {
+				// sort the line by its current values, which are all lower bounds of the exact costs
+				for(int other = 0; other < size; other++) {
+					keys[other] = ((long) Float.floatToIntBits(matrix.get(index(line, other))) << 32) | other;
+				}
+				Arrays.sort(keys);
+				
+				int found = 0;
+				for(int rank = 0; rank < size; rank++) {
+					final float bound = Float.intBitsToFloat((int) (keys[rank] >>> 32));
+					if(bound == Float.POSITIVE_INFINITY || (found == candidates && bound >= best[candidates - 1])) {
+						break;
+					}
+					
+					final int index = index(line, (int) keys[rank]);
+					if(!matrix.isExact(index)) {
+						// once the line is full there is no need to finish comparing a pair that cannot make it
+						final double limit = found < candidates ? Double.POSITIVE_INFINITY : best[candidates - 1];
+						final double cost = matrix.edges.getRight(index / size).averageDistance(matrix.edges.getLeft(index % size), limit, kernel);
+						matrix.set(index, (float) cost);
+						if(cost > limit) {
+							continue;
+						}
+						matrix.setExact(index);
+					}
+					
+					// keep the best costs sorted
+					float cost = matrix.get(index);
+					if(found < candidates) {
+						found++;
+					} else if(cost >= best[candidates - 1]) {
+						continue;
+					}
+					int slot = found - 1;
+					for(; slot > 0 && best[slot - 1] > cost; slot--) {
+						best[slot] = best[slot - 1];
+					}
+					best[slot] = cost;
+				}
+				
+				bounds[line] = found == candidates ? best[candidates - 1] : 0;
+			}
+		}
+		
+		private int index(int line, int other) {
+			return columns ? other * matrix.size + line : line * matrix.size + other;
+		}
+		
+	}
+
+}
@@ -0,0 +1,42 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+/**
+ * Picks the ordering engine by the number of strips: the exact Held-Karp program
+ * when it is cheap enough, and the path heuristic otherwise.
+ * 
+ */
+public class DefaultOrdering implements StripOrdering {
+	
+	/**
+	 * Largest number of strips that is solved exactly
+	 */
+	private static final int EXACT_LIMIT = 12;
+	
+	@Override
+	public int[] order(CostMatrix costs, long budgetMillis) {
+		if(costs.getSize() <= EXACT_LIMIT) {
+			return new HeldKarpOrdering().order(costs, budgetMillis);
+		}
+		
+		return new PathOrdering().order(costs, budgetMillis);
+	}
+
+}
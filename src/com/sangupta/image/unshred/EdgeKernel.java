@@ -0,0 +1,243 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compares two whole edge columns held as 8-bit U/V planes, returning the sum of
+ * the per-pixel chroma distances. This is the innermost loop of both strip width
+ * detection and strip matching.
+ * 
+ * The default kernel is chosen once at runtime: the vectorized kernel is used
+ * when it has been compiled in and the <code>jdk.incubator.vector</code> module
+ * is available (run with <code>--add-modules jdk.incubator.vector</code>),
+ * otherwise a plain scalar loop is used. Setting the system property
+ * <code>image.unshred.simd</code> to <code>false</code> forces the scalar kernel.
+ * 
+ * Columns kept off-heap (see {@link OffHeapArena}) are compared through the
+ * {@link ByteBuffer} variants, which read the planes in place.
+ * 
+ */
+public abstract class EdgeKernel {
+	
+	private static final String VECTOR_KERNEL = "com.sangupta.image.unshred.VectorEdgeKernel";
+	
+	private static final EdgeKernel DEFAULT = createDefault();
+	
+	/**
+	 * Number of rows summed between two checks against the limit of a bounded sum
+	 */
+	private static final int BOUND_CHUNK = 256;
+	
+	/**
+	 * Sum of the distances between <code>length</code> pixels of the first column,
+	 * starting at <code>offset1</code>, and the second column, starting at <code>offset2</code>.
+	 * 
+	 * @param u1
+	 * @param v1
+	 * @param offset1
+	 * @param u2
+	 * @param v2
+	 * @param offset2
+	 * @param length
+	 * @return
+	 */
+	public abstract double sum(byte[] u1, byte[] v1, int offset1, byte[] u2, byte[] v2, int offset2, int length);
+	
+	/**
+	 * Same as {@link #sum(byte[], byte[], int, byte[], byte[], int, int)}, except that
+	 * the summing is abandoned as soon as the partial sum exceeds the given limit.
+	 * The returned value is then only a lower bound of the full sum, but is still
+	 * larger than the limit.
+	 * 
+	 * @param u1
+	 * @param v1
+	 * @param offset1
+	 * @param u2
+	 * @param v2
+	 * @param offset2
+	 * @param length
+	 * @param limit
+	 * @return
+	 */
+	public double sum(byte[] u1, byte[] v1, int offset1, byte[] u2, byte[] v2, int offset2, int length, double limit) {
+		double distance = 0;
+		for(int start = 0; start < length; start += BOUND_CHUNK) {
+			distance += sum(u1, v1, offset1 + start, u2, v2, offset2 + start, Math.min(BOUND_CHUNK, length - start));
+			if(distance > limit) {
+				break;
+			}
+		}
+		return distance;
+	}
+	
+	/**
+	 * Same as {@link #sum(byte[], byte[], int, byte[], byte[], int, int)}, for planes
+	 * held in buffers. The buffers are read at absolute indices.
+	 * 
+	 * @param u1
+	 * @param v1
+	 * @param offset1
+	 * @param u2
+	 * @param v2
+	 * @param offset2
+	 * @param length
+	 * @return
+	 */
+	public abstract double sum(ByteBuffer u1, ByteBuffer v1, int offset1, ByteBuffer u2, ByteBuffer v2, int offset2, int length);
+	
+	/**
+	 * Bounded sum over planes held in buffers, see
+	 * {@link #sum(byte[], byte[], int, byte[], byte[], int, int, double)}.
+	 * 
+	 * @param u1
+	 * @param v1
+	 * @param offset1
+	 * @param u2
+	 * @param v2
+	 * @param offset2
+	 * @param length
+	 * @param limit
+	 * @return
+	 */
+	public double sum(ByteBuffer u1, ByteBuffer v1, int offset1, ByteBuffer u2, ByteBuffer v2, int offset2, int length, double limit) {
+		double distance = 0;
+		for(int start = 0; start < length; start += BOUND_CHUNK) {
+			distance += sum(u1, v1, offset1 + start, u2, v2, offset2 + start, Math.min(BOUND_CHUNK, length - start));
+			if(distance > limit) {
+				break;
+			}
+		}
+		return distance;
+	}
+	
+	/**
+	 * Same as {@link #sum(byte[], byte[], int, byte[], byte[], int, int)}, for a
+	 * first column held in arrays and a second one held in buffers. The distance
+	 * is symmetric, so the columns may be given in either order.
+	 * 
+	 * @param u1
+	 * @param v1
+	 * @param offset1
+	 * @param u2
+	 * @param v2
+	 * @param offset2
+	 * @param length
+	 * @return
+	 */
+	public abstract double sum(byte[] u1, byte[] v1, int offset1, ByteBuffer u2, ByteBuffer v2, int offset2, int length);
+	
+	/**
+	 * Bounded sum over a column held in arrays and one held in buffers, see
+	 * {@link #sum(byte[], byte[], int, byte[], byte[], int, int, double)}.
+	 * 
+	 * @param u1
+	 * @param v1
+	 * @param offset1
+	 * @param u2
+	 * @param v2
+	 * @param offset2
+	 * @param length
+	 * @param limit
+	 * @return
+	 */
+	public double sum(byte[] u1, byte[] v1, int offset1, ByteBuffer u2, ByteBuffer v2, int offset2, int length, double limit) {
+		double distance = 0;
+		for(int start = 0; start < length; start += BOUND_CHUNK) {
+			distance += sum(u1, v1, offset1 + start, u2, v2, offset2 + start, Math.min(BOUND_CHUNK, length - start));
+			if(distance > limit) {
+				break;
+			}
+		}
+		return distance;
+	}
+	
+	/**
+	 * Name of the kernel for display purposes.
+	 * 
+	 * @return
+	 */
+	public abstract String getName();
+	
+	/**
+	 * Return the kernel selected for this runtime.
+	 * 
+	 * @return
+	 */
+	public static EdgeKernel getDefault() {
+		return DEFAULT;
+	}
+	
+	private static EdgeKernel createDefault() {
+		if(!"false".equalsIgnoreCase(System.getProperty("image.unshred.simd"))) {
+			try {
+				return (EdgeKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+			} catch(Exception e) {
+				// kernel not compiled in
+			} catch(LinkageError e) {
+				// vector module not available at runtime
+			}
+		}
+		
+		return new ScalarEdgeKernel();
+	}
+	
+	/**
+	 * The portable scalar kernel. Stays in integer arithmetic and looks the
+	 * distance up from the table in {@link RGB}, so no square root is taken.
+	 * 
+	 */
+	public static class ScalarEdgeKernel extends EdgeKernel {
+
+		@Override
+		public double sum(byte[] u1, byte[] v1, int offset1, byte[] u2, byte[] v2, int offset2, int length) {
+			double distance = 0;
+			for(int i = 0; i < length; i++) {
+				distance += RGB.distance(u1[offset1 + i] & 0xff, v1[offset1 + i] & 0xff, u2[offset2 + i] & 0xff, v2[offset2 + i] & 0xff);
+			}
+			return distance;
+		}
+
+		@Override
+		public double sum(ByteBuffer u1, ByteBuffer v1, int offset1, ByteBuffer u2, ByteBuffer v2, int offset2, int length) {
+			double distance = 0;
+			for(int i = 0; i < length; i++) {
+				distance += RGB.distance(u1.get(offset1 + i) & 0xff, v1.get(offset1 + i) & 0xff, u2.get(offset2 + i) & 0xff, v2.get(offset2 + i) & 0xff);
+			}
+			return distance;
+		}
+
+		@Override
+		public double sum(byte[] u1, byte[] v1, int offset1, ByteBuffer u2, ByteBuffer v2, int offset2, int length) {
+			double distance = 0;
+			for(int i = 0; i < length; i++) {
+				distance += RGB.distance(u1[offset1 + i] & 0xff, v1[offset1 + i] & 0xff, u2.get(offset2 + i) & 0xff, v2.get(offset2 + i) & 0xff);
+			}
+			return distance;
+		}
+
+		@Override
+		public String getName() {
+			return "scalar";
+		}
+		
+	}
+
+}
@@ -0,0 +1,124 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Reads only the strip edges of an image of known strip width, without keeping
+ * the full image in memory.
+ * 
+ * The reader is asked to subsample the source horizontally with a period equal
+ * to the strip width: with an offset of <code>0</code> this returns exactly the
+ * left edge column of every strip, and with an offset of <code>width - 1</code>
+ * the right edge columns. The decoded images are only <code>strips</code> pixels
+ * wide, so peak memory stays proportional to the edges instead of the image.
+ * 
+ */
+public class EdgeReader {
+	
+	/**
+	 * Read the edges of all strips of the given width from the given image file.
+	 * 
+	 * @param file
+	 * @param stripWidth
+	 * @return
+	 * @throws IOException
+	 */
+	public static StripEdges read(File file, int stripWidth) throws IOException {
+		return read(file, stripWidth, null);
+	}
+	
+	/**
+	 * Read the edges of all strips of the given width from the given image file
+	 * into planes allocated from the given arena, or the heap if <code>null</code>.
+	 * 
+	 * @param file
+	 * @param stripWidth
+	 * @param arena
+	 * @return
+	 * @throws IOException
+	 */
+	public static StripEdges read(File file, int stripWidth, OffHeapArena arena) throws IOException {
+		ImageInputStream stream = ImageIO.createImageInputStream(file);
+		if(stream == null) {
+			throw new IOException("Unable to open image file " + file.getAbsolutePath());
+		}
+		
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if(!readers.hasNext()) {
+				throw new IOException("No image reader found for " + file.getAbsolutePath());
+			}
+			
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream, false, true);
+				return read(reader, stripWidth, arena);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+	
+	private static StripEdges read(ImageReader reader, int stripWidth, OffHeapArena arena) throws IOException {
+		final int width = reader.getWidth(0);
+		final int height = reader.getHeight(0);
+		final int strips = width / stripWidth;
+		
+		StripEdges edges = new StripEdges(strips, height, arena);
+		int[] column = new int[height];
+		
+		BufferedImage lefts = readColumns(reader, stripWidth, 0);
+		for(int strip = 0; strip < strips; strip++) {
+			lefts.getRGB(strip, 0, 1, height, column, 0, 1);
+			edges.setLeft(strip, column);
+		}
+		lefts = null;
+		
+		BufferedImage rights = readColumns(reader, stripWidth, stripWidth - 1);
+		for(int strip = 0; strip < strips; strip++) {
+			rights.getRGB(strip, 0, 1, height, column, 0, 1);
+			edges.setRight(strip, column);
+		}
+		
+		return edges;
+	}
+	
+	/**
+	 * Decode every <code>period</code>-th column of the image starting at the given offset.
+	 * 
+	 */
+	private static BufferedImage readColumns(ImageReader reader, int period, int offset) throws IOException {
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setSourceSubsampling(period, 1, offset, 0);
+		return reader.read(0, param);
+	}
+
+}
@@ -0,0 +1,132 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+/**
+ * A coarse signature of the strip edges: the U and V values of every edge are
+ * summed over blocks of rows. By the triangle inequality the distance between
+ * two block sums never exceeds the sum of the per-pixel distances within the
+ * block, so comparing signatures gives a cheap lower bound on the full cost of
+ * a pair of strips.
+ * 
+ */
+public class EdgeSignature {
+	
+	/**
+	 * Slack applied to the bound so that float rounding never lifts it above the exact cost
+	 */
+	private static final double SLACK = 1 - 1e-6;
+	
+	private final int strips;
+	
+	private final int height;
+	
+	private final int blocks;
+	
+	private final int[] leftU;
+	
+	private final int[] leftV;
+	
+	private final int[] rightU;
+	
+	private final int[] rightV;
+	
+	private EdgeSignature(int strips, int height, int blocks) {
+		this.strips = strips;
+		this.height = height;
+		this.blocks = blocks;
+		
+		final int size = strips * blocks;
+		this.leftU = new int[size];
+		this.leftV = new int[size];
+		this.rightU = new int[size];
+		this.rightV = new int[size];
+	}
+	
+	/**
+	 * Compute the signature of the given edges, summing blocks of the given
+	 * number of rows.
+	 * 
+	 * @param edges
+	 * @param blockRows
+	 * @return
+	 */
+	public static EdgeSignature compute(StripEdges edges, int blockRows) {
+		final int height = edges.getHeight();
+		EdgeSignature signature = new EdgeSignature(edges.getStrips(), height, (height + blockRows - 1) / blockRows);
+		for(int strip = 0; strip < signature.strips; strip++) {
+			sum(edges.getLeft(strip), blockRows, signature.leftU, signature.leftV, strip * signature.blocks);
+			sum(edges.getRight(strip), blockRows, signature.rightU, signature.rightV, strip * signature.blocks);
+		}
+		return signature;
+	}
+	
+	private static void sum(PixelColumn column, int blockRows, int[] u, int[] v, int offset) {
+		final int height = column.getHeight();
+		for(int y = 0; y < height; y++) {
+			u[offset + y / blockRows] += column.getU(y);
+			v[offset + y / blockRows] += column.getV(y);
+		}
+	}
+	
+	/**
+	 * Lower bound on the average distance between the right edge of strip
+	 * <code>left</code> and the left edge of strip <code>right</code>.
+	 * 
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	public double lowerBound(int left, int right) {
+		return distance(left, true, right, false) * SLACK;
+	}
+	
+	/**
+	 * Distance between the signatures of two edges, each being the left or the
+	 * right edge of a strip. This is a metric over the signatures, scaled to be
+	 * comparable with an average distance between edges.
+	 * 
+	 * @param strip1
+	 * @param right1
+	 * @param strip2
+	 * @param right2
+	 * @return
+	 */
+	public double distance(int strip1, boolean right1, int strip2, boolean right2) {
+		final int[] u1 = right1 ? this.rightU : this.leftU, v1 = right1 ? this.rightV : this.leftV;
+		final int[] u2 = right2 ? this.rightU : this.leftU, v2 = right2 ? this.rightV : this.leftV;
+		final int offset1 = strip1 * this.blocks, offset2 = strip2 * this.blocks;
+		double distance = 0;
+		for(int block = 0; block < this.blocks; block++) {
+			final double du = u1[offset1 + block] - u2[offset2 + block];
+			final double dv = v1[offset1 + block] - v2[offset2 + block];
+			distance += Math.sqrt(du * du + dv * dv);
+		}
+		return distance / this.height;
+	}
+
+	public int getStrips() {
+		return strips;
+	}
+
+	public int getBlocks() {
+		return blocks;
+	}
+
+}
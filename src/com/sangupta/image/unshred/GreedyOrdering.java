@@ -0,0 +1,101 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.BitSet;
+
+/**
+ * The original greedy ordering: seed with the first strip and keep appending the
+ * cheapest unused strip to whichever end of the placed run matches better. Fast,
+ * but choices once made are never undone.
+ * 
+ */
+public class GreedyOrdering implements StripOrdering {
+	
+	private final int seed;
+	
+	public GreedyOrdering() {
+		this(0);
+	}
+	
+	public GreedyOrdering(int seed) {
+		this.seed = seed;
+	}
+
+	@Override
+	public int[] order(CostMatrix costs, long budgetMillis) {
+		BitSet used = new BitSet(costs.getSize());
+		return order(NeighbourIndex.after(costs, used), NeighbourIndex.before(costs, used), used);
+	}
+	
+	/**
+	 * Order the strips walking the given neighbour rankings. Each open end of the
+	 * run keeps its position in the ranking of its strip, so that a placement only
+	 * skips the strips used since instead of rescanning all of them.
+	 * 
+	 * @param after
+	 *            the neighbours that can be placed after each strip
+	 * 
+	 * @param before
+	 *            the neighbours that can be placed before each strip
+	 * 
+	 * @param used
+	 *            the set of placed strips, shared with the rankings if they need it
+	 * 
+	 * @return
+	 */
+	public int[] order(StripNeighbours after, StripNeighbours before, BitSet used) {
+		final int size = after.getSize();
+		
+		// the placed run grows from the middle of a buffer twice the size
+		int[] run = new int[2 * size];
+		int first = size, last = size;
+		run[first] = this.seed;
+		used.set(this.seed);
+		
+		int leftRank = 0, rightRank = 0;
+		for(int index = 1; index < size; index++) {
+			final int leftStrip = run[first];
+			final int rightStrip = run[last];
+			
+			leftRank = before.next(leftStrip, leftRank, used);
+			rightRank = after.next(rightStrip, rightRank, used);
+			
+			final int leftIndex = before.get(leftStrip, leftRank);
+			final int rightIndex = after.get(rightStrip, rightRank);
+			final double minLeftScore = before.cost(leftStrip, leftRank);
+			final double minRightScore = after.cost(rightStrip, rightRank);
+			
+			if(minRightScore < minLeftScore) {
+				run[++last] = rightIndex;
+				used.set(rightIndex);
+				rightRank = 0;
+			} else {
+				run[--first] = leftIndex;
+				used.set(leftIndex);
+				leftRank = 0;
+			}
+		}
+		
+		int[] order = new int[size];
+		System.arraycopy(run, first, order, 0, size);
+		return order;
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.Arrays;
+
+/**
+ * Exact minimum-cost ordering using the Held-Karp dynamic program over subsets of
+ * strips. Runs in <code>O(2^n * n^2)</code> time and <code>O(2^n * n)</code> memory,
+ * so it is only usable for a small number of strips.
+ * 
+ */
+public class HeldKarpOrdering implements StripOrdering {
+	
+	/**
+	 * Maximum number of strips this ordering can handle
+	 */
+	public static final int MAX_STRIPS = 16;
+
+	@Override
+	public int[] order(CostMatrix costs, long budgetMillis) {
+		final int size = costs.getSize();
+		if(size > MAX_STRIPS) {
+			throw new IllegalArgumentException("Held-Karp ordering supports at most " + MAX_STRIPS + " strips, got " + size);
+		}
+		
+		if(size == 1) {
+			return new int[] { 0 };
+		}
+		
+		final int subsets = 1 << size;
+		
+		// best[mask * size + last] is the cheapest path over mask that ends at last
+		double[] best = new double[subsets * size];
+		int[] previous = new int[subsets * size];
+		Arrays.fill(best, Double.MAX_VALUE);
+		for(int strip = 0; strip < size; strip++) {
+			best[(1 << strip) * size + strip] = 0;
+			previous[(1 << strip) * size + strip] = -1;
+		}
+		
+		for(int mask = 1; mask < subsets; mask++) {
+			for(int last = 0; last < size; last++) {
+				final double current = best[mask * size + last];
+				if(current == Double.MAX_VALUE) {
+					continue;
+				}
+				
+				for(int next = 0; next < size; next++) {
+					if((mask & (1 << next)) != 0) {
+						continue;
+					}
+					
+					final int nextMask = mask | (1 << next);
+					final double cost = current + costs.cost(last, next);
+					if(cost < best[nextMask * size + next]) {
+						best[nextMask * size + next] = cost;
+						previous[nextMask * size + next] = last;
+					}
+				}
+			}
+		}
+		
+		// find the cheapest complete path and walk it back
+		final int full = subsets - 1;
+		int last = 0;
+		for(int strip = 1; strip < size; strip++) {
+			if(best[full * size + strip] < best[full * size + last]) {
+				last = strip;
+			}
+		}
+		
+		int[] order = new int[size];
+		int mask = full;
+		for(int position = size - 1; position >= 0; position--) {
+			order[position] = last;
+			final int before = previous[mask * size + last];
+			mask &= ~(1 << last);
+			last = before;
+		}
+		
+		return order;
+	}
+
+}
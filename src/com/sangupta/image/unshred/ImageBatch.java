@@ -0,0 +1,292 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unshreds a whole set of images in one JVM. The work is split into a pipeline of
+ * stages - decode, width detection, matching and encode - each with its own pool of
+ * threads, connected by bounded queues. Disk I/O of one image overlaps with the
+ * computation of another, and the number of images held in memory is bounded by the
+ * depth of the queues.
+ * 
+ */
+public class ImageBatch {
+	
+	/**
+	 * Number of images that may wait between two stages
+	 */
+	private static final int QUEUE_DEPTH = 2;
+	
+	/**
+	 * Marker that tells a stage there is no more work
+	 */
+	private static final Job END = new Job(null, -1);
+	
+	private final AtomicInteger passed = new AtomicInteger();
+	
+	private final AtomicInteger failed = new AtomicInteger();
+	
+	/**
+	 * Command line function to unshred all images in the given folders or files.
+	 * 
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length == 0) {
+			System.out.println("Usage: $ java -jar image-unshred.jar batch <width> <folder|image> ...");
+			System.out.println("");
+			System.out.println("    <width>    the width of the shred strip, if known, else auto");
+			System.out.println("    <folder>   a folder whose images are all to be un-shredded");
+			System.out.println("    <image>    an image that needs to be un-shredded");
+			System.out.println("");
+			System.out.println("For an original image as original.png the reconstructed image is created as");
+			System.out.println("original.reconstructed.png. Supported image formats are GIF, JPG, and PNG.");
+			return;
+		}
+		
+		int stripWidth = -1;
+		if(!"auto".equalsIgnoreCase(args[0])) {
+			stripWidth = Integer.parseInt(args[0]);
+		}
+		
+		List<File> files = new ArrayList<File>();
+		for(int index = 1; index < args.length; index++) {
+			File file = new File(args[index]).getAbsoluteFile();
+			if(file.isDirectory()) {
+				File[] children = file.listFiles();
+				if(children != null) {
+					for(File child : children) {
+						if(isImage(child)) {
+							files.add(child);
+						}
+					}
+				}
+			} else if(file.exists()) {
+				files.add(file);
+			} else {
+				System.out.println("Skipping missing file " + file.getAbsolutePath());
+			}
+		}
+		
+		System.out.println("Number of images to be un-shredded: " + files.size());
+		
+		final long start = System.currentTimeMillis();
+		ImageBatch batch = new ImageBatch();
+		batch.run(files, stripWidth);
+		final long end = System.currentTimeMillis();
+		
+		System.out.println("Passed: " + batch.passed.get() + ", Failed: " + batch.failed.get());
+		System.out.println("Batch completed in " + (end - start) + " ms.");
+	}
+	
+	/**
+	 * Run all the given images through the pipeline and wait for them to complete.
+	 * 
+	 * @param files
+	 * @param stripWidth
+	 * @throws InterruptedException
+	 */
+	public void run(List<File> files, int stripWidth) throws InterruptedException {
+		ImageUnshred.setLogsEnabled(false);
+		
+		final int processors = Runtime.getRuntime().availableProcessors();
+		
+		BlockingQueue<Job> sources = new ArrayBlockingQueue<Job>(files.size() + 1);
+		BlockingQueue<Job> decoded = new ArrayBlockingQueue<Job>(QUEUE_DEPTH);
+		BlockingQueue<Job> detected = new ArrayBlockingQueue<Job>(QUEUE_DEPTH);
+		BlockingQueue<Job> matched = new ArrayBlockingQueue<Job>(QUEUE_DEPTH);
+		
+		for(File file : files) {
+			sources.add(new Job(file, stripWidth));
+		}
+		sources.add(END);
+		
+		CountDownLatch done = new CountDownLatch(1);
+		
+		start(new Stage("decode", sources, decoded, 2) {
+			
+			@Override
+			protected void process(Job job) throws Exception {
+				job.unshredder.loadImage(job.file.getAbsolutePath());
+			}
+			
+		});
+		
+		start(new Stage("detect", decoded, detected, 1) {
+			
+			@Override
+			protected void process(Job job) throws Exception {
+				job.unshredder.findStripWidth();
+			}
+			
+		});
+		
+		start(new Stage("match", detected, matched, Math.max(1, processors / 2)) {
+			
+			@Override
+			protected void process(Job job) throws Exception {
+				job.unshredder.unshred();
+				job.unshredder.reconstruct(false);
+			}
+			
+		});
+		
+		start(new Stage("encode", matched, null, 2, done) {
+			
+			@Override
+			protected void process(Job job) throws Exception {
+				String output = ImageUnshred.getUnshreddedImageName(job.file.getAbsolutePath());
+				job.unshredder.writeReconstructed(output);
+				passed.incrementAndGet();
+				System.out.println("Image " + job.file.getName() + " reconstructed as " + output);
+			}
+			
+		});
+		
+		done.await();
+	}
+	
+	private void start(Stage stage) {
+		for(int index = 0; index < stage.threads; index++) {
+			Thread thread = new Thread(stage, "batch-" + stage.name + "-" + index);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	private static boolean isImage(File file) {
+		String name = file.getName().toLowerCase();
+		if(name.contains(".reconstructed.")) {
+			return false;
+		}
+		
+		return name.endsWith(".gif") || name.endsWith(".jpg") || name.endsWith(".png");
+	}
+	
+	/**
+	 * One image travelling through the pipeline.
+	 * 
+	 */
+	private static class Job {
+		
+		private final File file;
+		
+		private final ImageUnshred unshredder;
+		
+		Job(File file, int stripWidth) {
+			this.file = file;
+			this.unshredder = new ImageUnshred(stripWidth);
+		}
+		
+	}
+	
+	/**
+	 * A pipeline stage: a number of threads that take jobs from the input queue,
+	 * process them and hand them to the output queue. When the last thread of a
+	 * stage sees the end marker, the marker is passed on to the next stage.
+	 * 
+	 */
+	private abstract class Stage implements Runnable {
+		
+		private final String name;
+		
+		private final BlockingQueue<Job> input;
+		
+		private final BlockingQueue<Job> output;
+		
+		private final int threads;
+		
+		private final AtomicInteger running;
+		
+		private final CountDownLatch done;
+		
+		Stage(String name, BlockingQueue<Job> input, BlockingQueue<Job> output, int threads) {
+			this(name, input, output, threads, null);
+		}
+		
+		Stage(String name, BlockingQueue<Job> input, BlockingQueue<Job> output, int threads, CountDownLatch done) {
+			this.name = name;
+			this.input = input;
+			this.output = output;
+			this.threads = threads;
+			this.running = new AtomicInteger(threads);
+			this.done = done;
+		}
+		
+		protected abstract void process(Job job) throws Exception;
+		
+		@Override
+		public void run() {
+			try {
+				while(true) {
+					Job job = this.input.take();
+					if(job == END) {
+						// let the other threads of this stage see the marker too
+						this.input.put(END);
+						break;
+					}
+					
+					try {
+						process(job);
+					} catch(Throwable e) {
+						// errors such as running out of memory on one large image fail only that image
+						failed.incrementAndGet();
+						System.out.println("Image " + job.file.getName() + " failed in " + this.name + " stage: " + e);
+						continue;
+					}
+					
+					if(this.output != null) {
+						this.output.put(job);
+					}
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				// however this thread ends, the last one out must end the next stage
+				if(this.running.decrementAndGet() == 0) {
+					finish();
+				}
+			}
+		}
+		
+		private void finish() {
+			try {
+				if(this.output != null) {
+					this.output.put(END);
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if(this.done != null) {
+					this.done.countDown();
+				}
+			}
+		}
+		
+	}
+
+}
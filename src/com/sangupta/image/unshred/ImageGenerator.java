@@ -0,0 +1,484 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Generates synthetic shredded images of any size, to drive the unshredder with
+ * reproducible workloads from a handful of strips up to a hundred thousand.
+ * 
+ * Every pixel of the original image is a function of its position and a seed
+ * alone, so the shredded image is rendered directly, each strip being drawn from
+ * the columns of the original strip the shuffle put there: the original image is
+ * never held in memory. The same seed always gives the same image and the same
+ * shuffle, which is returned as a {@link Manifest} of the original strip at each
+ * position, as recorded by {@link ImageShred}.
+ * 
+ */
+public class ImageGenerator {
+	
+	/**
+	 * The kinds of content that can be generated.
+	 * 
+	 */
+	public static enum Content {
+		
+		/**
+		 * Smooth color gradients
+		 */
+		GRADIENT,
+		
+		/**
+		 * Fractal value noise with per-pixel grain, a textured natural-looking image
+		 */
+		NOISE,
+		
+		/**
+		 * Lines of dark glyphs on a light background, with sharp edges everywhere
+		 */
+		TEXT,
+		
+		/**
+		 * A low-texture sky with faint clouds, where neighbouring strips are hard to tell apart
+		 */
+		SKY,
+		
+		/**
+		 * Sky at the top, noise in the middle and text at the bottom
+		 */
+		MIXED
+		
+	}
+	
+	/**
+	 * Smallest number of rows rendered by a single task
+	 */
+	private static final int MIN_ROWS = 8;
+	
+	private final Content content;
+	
+	private final int width;
+	
+	private final int height;
+	
+	private final long seed;
+	
+	/**
+	 * Height of a line of text, and width of a glyph
+	 */
+	private final int lineHeight, glyphWidth;
+	
+	/**
+	 * Gradient periods across the image, and phases, per channel
+	 */
+	private final double[] periods = new double[6], phases = new double[3];
+	
+	/**
+	 * @param content
+	 * @param width
+	 *            the width of the original image
+	 * 
+	 * @param height
+	 * @param seed
+	 */
+	private ImageGenerator(Content content, int width, int height, long seed) {
+		this.content = content;
+		this.width = width;
+		this.height = height;
+		this.seed = seed;
+		
+		Random random = new Random(seed);
+		for(int index = 0; index < this.periods.length; index++) {
+			this.periods[index] = 0.2 + random.nextDouble() * 0.6;
+		}
+		for(int index = 0; index < this.phases.length; index++) {
+			this.phases[index] = random.nextDouble() * 2 * Math.PI;
+		}
+		this.lineHeight = 12 + random.nextInt(13);
+		this.glyphWidth = this.lineHeight * 2 / 3;
+	}
+	
+	/**
+	 * Command line function to generate a shredded image.
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 3 || args.length > 6) {
+			System.out.println("Usage: $ java -jar image-unshred.jar generate <content> <strips> <width> <height> <seed> <image>");
+			System.out.println("");
+			System.out.println("    <content>  the kind of image: gradient, noise, text, sky or mixed");
+			System.out.println("    <strips>   the number of strips");
+			System.out.println("    <width>    the width of a strip");
+			System.out.println("    <height>   the height of the image, defaults to 256");
+			System.out.println("    <seed>     the seed of the content and the shuffle, defaults to 0");
+			System.out.println("    <image>    the shredded image to write, defaults to");
+			System.out.println("               <content>-<strips>x<width>x<height>-<seed>.shredded.png");
+			System.out.println("");
+			System.out.println("The shuffle is recorded next to the image, as for the shred function: for");
+			System.out.println("an image named sky.shredded.png it is written to sky.shredded.truth.json.");
+			return;
+		}
+		
+		final Content content;
+		try {
+			content = Content.valueOf(args[0].toUpperCase());
+		} catch(IllegalArgumentException e) {
+			System.out.println("Unknown content " + args[0] + ", use gradient, noise, text, sky or mixed.");
+			return;
+		}
+		
+		final int strips = Integer.parseInt(args[1]);
+		final int stripWidth = Integer.parseInt(args[2]);
+		final int height = args.length >= 4 ? Integer.parseInt(args[3]) : 256;
+		final long seed = args.length >= 5 ? Long.parseLong(args[4]) : 0;
+		String fileName = args.length == 6 ? args[5] : content.name().toLowerCase() + "-" + strips + "x" + stripWidth + "x" + height + "-" + seed + ".shredded.png";
+		
+		final long start = System.currentTimeMillis();
+		Workload workload = generate(content, strips, stripWidth, height, seed);
+		final long generated = System.currentTimeMillis();
+		
+		int index = fileName.lastIndexOf('.');
+		String extension = fileName.substring(index + 1);
+		ImageIO.write(workload.getShredded(), extension, new File(fileName));
+		workload.getTruth().write(new File(ImageShred.getTruthName(fileName)));
+		
+		System.out.println("Generated " + strips + " strips of " + stripWidth + "x" + height + " pixels in " + (generated - start) + " ms.");
+		System.out.println("Shredded image written as " + fileName + " in " + (System.currentTimeMillis() - generated) + " ms.");
+	}
+	
+	/**
+	 * Generate an original, unshredded image.
+	 * 
+	 * @param content
+	 * @param width
+	 * @param height
+	 * @param seed
+	 * @return
+	 */
+	public static BufferedImage generate(Content content, int width, int height, long seed) {
+		int[] identity = new int[width];
+		for(int index = 0; index < width; index++) {
+			identity[index] = index;
+		}
+		return new ImageGenerator(content, width, height, seed).render(identity, 1);
+	}
+	
+	/**
+	 * Generate a shredded image of the given number of strips, shuffled with a
+	 * generator seeded with the given seed. The original image is the one
+	 * generated with the same content and seed.
+	 * 
+	 * @param content
+	 * @param strips
+	 * @param stripWidth
+	 * @param height
+	 * @param seed
+	 * @return the shredded image and the original strip at each of its positions
+	 */
+	public static Workload generate(Content content, int strips, int stripWidth, int height, long seed) {
+		if(strips < 1 || stripWidth < 1 || height < 1) {
+			throw new IllegalArgumentException("Strip count, strip width and height must be positive");
+		}
+		if((long) strips * stripWidth * height > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Image of " + strips + " strips of " + stripWidth + "x" + height + " pixels is too large");
+		}
+		
+		int[] permutation = ImageShred.shuffle(strips, new Random(seed));
+		BufferedImage shredded = new ImageGenerator(content, strips * stripWidth, height, seed).render(permutation, stripWidth);
+		return new Workload(shredded, new Manifest(stripWidth, permutation, null));
+	}
+	
+	/**
+	 * Render the image with its strips in the given order.
+	 * 
+	 * @param order
+	 *            the original strip at each position
+	 * 
+	 * @param stripWidth
+	 * @return
+	 */
+	private BufferedImage render(int[] order, int stripWidth) {
+		BufferedImage image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		final int threshold = Math.max(MIN_ROWS, this.height / (pool.getParallelism() * 4));
+		pool.invoke(new RowTask(this, order, stripWidth, pixels, 0, this.height, threshold));
+		return image;
+	}
+	
+	/**
+	 * The color of a pixel of the original image.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	int pixel(int x, int y) {
+		switch(this.content) {
+			case GRADIENT:
+				return gradient(x, y);
+				
+			case NOISE:
+				return noise(x, y);
+				
+			case TEXT:
+				return text(x, y);
+				
+			case SKY:
+				return sky(x, y);
+				
+			default:
+				if(y < this.height / 3) {
+					return sky(x, y);
+				}
+				return y < this.height * 2 / 3 ? noise(x, y) : text(x, y);
+		}
+	}
+	
+	/**
+	 * Each channel is a slow wave across the image, less than a period wide, so that
+	 * no two columns far apart look alike.
+	 * 
+	 */
+	private int gradient(int x, int y) {
+		final double u = (double) x / this.width;
+		final double v = (double) y / this.height;
+		int color = 0;
+		for(int channel = 0; channel < 3; channel++) {
+			final double wave = Math.sin(2 * Math.PI * (u * this.periods[2 * channel] + v * this.periods[2 * channel + 1]) + this.phases[channel]);
+			color = (color << 8) | clamp(128 + 110 * wave + grain(x, y, channel, 2));
+		}
+		return color;
+	}
+	
+	/**
+	 * Three octaves of value noise per channel, over a grain of a few levels.
+	 * 
+	 */
+	private int noise(int x, int y) {
+		int color = 0;
+		for(int channel = 0; channel < 3; channel++) {
+			final double value = fractal(x / 48.0, y / 48.0, channel, 3);
+			color = (color << 8) | clamp(40 + 180 * value + grain(x, y, channel, 6));
+		}
+		return color;
+	}
+	
+	/**
+	 * Glyphs of 5x7 cells, each cell inked or not from a hash of the glyph, laid
+	 * out in lines with the odd space between words.
+	 * 
+	 */
+	private int text(int x, int y) {
+		final int paper = clamp(236 + grain(x, y, 0, 4));
+		final int line = y / this.lineHeight;
+		final int glyph = x / this.glyphWidth;
+		
+		// top and bottom of each line are the space between lines
+		final int row = (y % this.lineHeight) * 10 / this.lineHeight - 2;
+		final int column = (x % this.glyphWidth) * 6 / this.glyphWidth;
+		final long bits = hash(line, glyph, 7);
+		final boolean space = (bits & 0x7) == 0;
+		
+		if(row < 0 || row >= 7 || column >= 5 || space || (bits >>> (3 + row * 5 + column) & 1) == 0) {
+			return (paper << 16) | (paper << 8) | paper;
+		}
+		
+		final int ink = clamp(30 + grain(x, y, 1, 10));
+		return (ink << 16) | (ink << 8) | clamp(ink + 20);
+	}
+	
+	/**
+	 * A vertical gradient from deep to pale blue, with faint soft clouds.
+	 * 
+	 */
+	private int sky(int x, int y) {
+		final double v = (double) y / this.height;
+		final double cloud = Math.max(0, fractal(x / 160.0, y / 80.0, 3, 2) - 0.55) * 2.2;
+		final double red = 70 + 110 * v;
+		final double green = 130 + 80 * v;
+		final double blue = 225 + 25 * v;
+		return (clamp(red + (250 - red) * cloud + grain(x, y, 0, 1)) << 16)
+				| (clamp(green + (250 - green) * cloud + grain(x, y, 1, 1)) << 8)
+				| clamp(blue + (250 - blue) * cloud + grain(x, y, 2, 1));
+	}
+	
+	/**
+	 * Sum of octaves of value noise, scaled to [0, 1).
+	 * 
+	 */
+	private double fractal(double x, double y, int channel, int octaves) {
+		double sum = 0, amplitude = 1, total = 0;
+		for(int octave = 0; octave < octaves; octave++) {
+			sum += amplitude * valueNoise(x, y, channel * 16 + octave);
+			total += amplitude;
+			amplitude /= 2;
+			x *= 2;
+			y *= 2;
+		}
+		return sum / total;
+	}
+	
+	/**
+	 * Smoothly interpolated random values on the integer lattice, in [0, 1).
+	 * 
+	 */
+	private double valueNoise(double x, double y, int layer) {
+		final int x0 = (int) Math.floor(x);
+		final int y0 = (int) Math.floor(y);
+		final double fx = smooth(x - x0);
+		final double fy = smooth(y - y0);
+		
+		final double top = lerp(lattice(x0, y0, layer), lattice(x0 + 1, y0, layer), fx);
+		final double bottom = lerp(lattice(x0, y0 + 1, layer), lattice(x0 + 1, y0 + 1, layer), fx);
+		return lerp(top, bottom, fy);
+	}
+	
+	private double lattice(int x, int y, int layer) {
+		return (hash(x, y, layer) >>> 11) * 0x1.0p-53;
+	}
+	
+	/**
+	 * Uniform noise in <code>[-amplitude, amplitude]</code>, different for every pixel and channel.
+	 * 
+	 */
+	private int grain(int x, int y, int channel, int amplitude) {
+		return (int) ((hash(x, y, 64 + channel) >>> 33) % (2 * amplitude + 1)) - amplitude;
+	}
+	
+	/**
+	 * A 64-bit hash of a position and a layer under the seed, mixed with the
+	 * finalizer of MurmurHash3.
+	 * 
+	 */
+	private long hash(int x, int y, int layer) {
+		long hash = this.seed ^ ((long) x * 0x9e3779b97f4a7c15l) ^ ((long) y * 0xc2b2ae3d27d4eb4fl) ^ ((long) layer * 0x165667b19e3779f9l);
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdl;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53l;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	private static double smooth(double t) {
+		return t * t * (3 - 2 * t);
+	}
+	
+	private static double lerp(double a, double b, double t) {
+		return a + (b - a) * t;
+	}
+	
+	private static int clamp(double value) {
+		return Math.max(0, Math.min(255, (int) value));
+	}
+	
+	/**
+	 * A shredded image along with the shuffle that produced it.
+	 * 
+	 */
+	public static class Workload {
+		
+		private final BufferedImage shredded;
+		
+		private final Manifest truth;
+		
+		public Workload(BufferedImage shredded, Manifest truth) {
+			this.shredded = shredded;
+			this.truth = truth;
+		}
+
+		public BufferedImage getShredded() {
+			return shredded;
+		}
+
+		/**
+		 * The strip width, and the original strip at each position of the shredded image.
+		 * 
+		 * @return
+		 */
+		public Manifest getTruth() {
+			return truth;
+		}
+		
+	}
+	
+	/**
+	 * Renders the rows <code>[from, to)</code>, drawing each position from the
+	 * columns of the original strip placed there.
+	 * 
+	 */
+	private static class RowTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		
+		private final ImageGenerator generator;
+		
+		private final int[] order;
+		
+		private final int stripWidth;
+		
+		private final int[] pixels;
+		
+		private final int from, to, threshold;
+		
+		RowTask(ImageGenerator generator, int[] order, int stripWidth, int[] pixels, int from, int to, int threshold) {
+			this.generator = generator;
+			this.order = order;
+			this.stripWidth = stripWidth;
+			this.pixels = pixels;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > threshold) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new RowTask(generator, order, stripWidth, pixels, from, middle, threshold), new RowTask(generator, order, stripWidth, pixels, middle, to, threshold));
+				return;
+			}
+			
+			final int width = order.length * stripWidth;
+			for(int y = from; y < to; y++) {
+				int index = y * width;
+				for(int position = 0; position < order.length; position++) {
+					final int left = order[position] * stripWidth;
+					for(int x = left; x < left + stripWidth; x++) {
+						pixels[index++] = generator.pixel(x, y);
+					}
+				}
+			}
+		}
+		
+	}
+
+}
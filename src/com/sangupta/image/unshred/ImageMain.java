@@ -28,7 +28,7 @@ public class ImageMain {
 					"\n" +
 					"\n$ java -jar image-unshred.jar <function> <arguments>" +
 					"\n" +
-					"\n    <function>    Valid values are shred/unshred/test" +
+					"\n    <function>    Valid values are shred/unshred/test/batch/serve/generate" +
 					"\n    <arguments>   Arguments to be passed to the respective function");
 			return;
 		}
@@ -51,7 +51,22 @@ public class ImageMain {
 			return;
 		}
 		
-		System.out.println("Unknown function: Valid values are shred/unshred/test");
+		if("batch".equals(function)) {
+			ImageBatch.main(newArgs);
+			return;
+		}
+		
+		if("serve".equals(function)) {
+			ImageServer.main(newArgs);
+			return;
+		}
+		
+		if("generate".equals(function)) {
+			ImageGenerator.main(newArgs);
+			return;
+		}
+		
+		System.out.println("Unknown function: Valid values are shred/unshred/test/batch/serve/generate");
 		return;
 	}
 
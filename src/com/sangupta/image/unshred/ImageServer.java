@@ -0,0 +1,311 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves unshredding over HTTP from a long-running JVM, so that requests do not
+ * pay for JVM startup, ImageIO plugin discovery and a cold JIT. A shredded image
+ * is posted to <code>/unshred</code> and the reconstructed image, or only the strip
+ * order as a JSON or binary {@link Manifest}, is returned.
+ * 
+ * Each request is handled on its own virtual thread when the runtime offers them,
+ * and on a cached pool of platform threads otherwise. Decoding and encoding run on
+ * the request thread, while the matching is handed to a fixed pool of one thread
+ * per processor so that concurrent requests cannot oversubscribe the CPUs.
+ * 
+ */
+public class ImageServer {
+	
+	private static final int DEFAULT_PORT = 8080;
+	
+	/**
+	 * Size of the synthetic image unshredded at startup to warm up the JIT
+	 */
+	private static final int WARM_UP_SIZE = 256;
+	
+	private static final int WARM_UP_ROUNDS = 20;
+	
+	private final HttpServer server;
+	
+	private final ExecutorService requests;
+	
+	private final ExecutorService matchers;
+	
+	/**
+	 * Command line function to start the server.
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length > 0 && ("-h".equals(args[0]) || "help".equalsIgnoreCase(args[0]))) {
+			System.out.println("Usage: $ java -jar image-unshred.jar serve [port] [threads]");
+			System.out.println("");
+			System.out.println("    [port]      the port to listen on, defaults to " + DEFAULT_PORT);
+			System.out.println("    [threads]   the number of images matched at the same time, defaults to");
+			System.out.println("                the number of processors");
+			System.out.println("");
+			System.out.println("POST the image bytes to /unshred, with the optional query parameters");
+			System.out.println("");
+			System.out.println("    width=<width|auto>   the width of the shred strip, auto-detected by default");
+			System.out.println("    output=<image|order|manifest> the reconstructed image, or the strip order as");
+			System.out.println("                         a JSON or binary manifest");
+			System.out.println("    format=<png|jpg|gif> the format of the reconstructed image, defaults to png");
+			return;
+		}
+		
+		int port = DEFAULT_PORT;
+		if(args.length > 0) {
+			port = Integer.parseInt(args[0]);
+		}
+		
+		int threads = Runtime.getRuntime().availableProcessors();
+		if(args.length > 1) {
+			threads = Integer.parseInt(args[1]);
+		}
+		
+		ImageUnshred.setLogsEnabled(false);
+		
+		System.out.println("Warming up...");
+		final long start = System.currentTimeMillis();
+		warmUp();
+		System.out.println("Warmed up in " + (System.currentTimeMillis() - start) + " ms.");
+		
+		ImageServer server = new ImageServer(port, threads);
+		server.start();
+		System.out.println("Listening on port " + port + " with " + threads + " matching threads.");
+	}
+	
+	public ImageServer(int port, int threads) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.requests = createRequestExecutor();
+		this.matchers = Executors.newFixedThreadPool(threads);
+		
+		this.server.setExecutor(this.requests);
+		this.server.createContext("/unshred", new UnshredHandler());
+		this.server.createContext("/health", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 200, "text/plain", "OK".getBytes("UTF-8"));
+			}
+			
+		});
+	}
+	
+	public void start() {
+		this.server.start();
+	}
+	
+	/**
+	 * Stop accepting requests, waiting at most the given number of seconds for
+	 * those in flight.
+	 * 
+	 * @param delaySeconds
+	 */
+	public void stop(int delaySeconds) {
+		this.server.stop(delaySeconds);
+		this.requests.shutdown();
+		this.matchers.shutdown();
+	}
+	
+	/**
+	 * Use a virtual thread per request when the runtime has them, a cached pool
+	 * otherwise.
+	 * 
+	 * @return
+	 */
+	private static ExecutorService createRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(Exception e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+	
+	/**
+	 * Unshred a synthetic image a few times, and round-trip it through the PNG
+	 * codec, so that the hot paths are compiled before the first request.
+	 * 
+	 * @throws Exception
+	 */
+	private static void warmUp() throws Exception {
+		Random random = new Random(0);
+		BufferedImage image = new BufferedImage(WARM_UP_SIZE, WARM_UP_SIZE, BufferedImage.TYPE_INT_RGB);
+		for(int y = 0; y < WARM_UP_SIZE; y++) {
+			for(int x = 0; x < WARM_UP_SIZE; x++) {
+				image.setRGB(x, y, (x << 16) | (y << 8) | random.nextInt(32));
+			}
+		}
+		
+		// cached results would skip the very code that is to be warmed up
+		UnshredOptions options = new UnshredOptions();
+		options.setCached(false);
+		
+		BufferedImage shredded = ImageShred.shred(image, 8);
+		for(int round = 0; round < WARM_UP_ROUNDS; round++) {
+			UnshredResult result = ImageUnshred.unshred(shredded, options);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ImageIO.write(result.getReconstructed(), "png", bytes);
+			ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+		}
+	}
+	
+	/**
+	 * Handles <code>POST /unshred</code>.
+	 * 
+	 */
+	private class UnshredHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if(!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+					send(exchange, 405, "text/plain", "Only POST is supported".getBytes("UTF-8"));
+					return;
+				}
+				
+				Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+				final String output = parameters.containsKey("output") ? parameters.get("output").toLowerCase() : "image";
+				final String format = parameters.containsKey("format") ? parameters.get("format").toLowerCase() : "png";
+				if(!"image".equals(output) && !"order".equals(output) && !"manifest".equals(output)) {
+					send(exchange, 400, "text/plain", ("Unknown output " + output + ", use image, order or manifest").getBytes("UTF-8"));
+					return;
+				}
+				
+				if("image".equals(output) && !ImageUnshred.canEncode(format)) {
+					send(exchange, 400, "text/plain", ("Unsupported output format " + format).getBytes("UTF-8"));
+					return;
+				}
+				
+				// the strips are streamed to the encoder, not placed in a new image
+				final UnshredOptions options = new UnshredOptions();
+				options.setReconstruct(false);
+				final String width = parameters.get("width");
+				if(width != null && !"auto".equalsIgnoreCase(width)) {
+					options.setStripWidth(Integer.parseInt(width));
+				}
+				
+				BufferedImage decoded;
+				try {
+					decoded = ImageIO.read(exchange.getRequestBody());
+				} catch(IOException e) {
+					// a truncated or corrupt image
+					decoded = null;
+				}
+				
+				final BufferedImage image = decoded;
+				if(image == null) {
+					send(exchange, 400, "text/plain", "Request body is not a readable image".getBytes("UTF-8"));
+					return;
+				}
+				
+				UnshredResult result = matchers.submit(new Callable<UnshredResult>() {
+					
+					@Override
+					public UnshredResult call() throws Exception {
+						return ImageUnshred.unshred(image, options);
+					}
+					
+				}).get();
+				
+				if("order".equals(output)) {
+					send(exchange, 200, "application/json", result.getManifest().toJson().getBytes("UTF-8"));
+					return;
+				}
+				
+				if("manifest".equals(output)) {
+					send(exchange, 200, "application/octet-stream", result.getManifest().toBytes());
+					return;
+				}
+				
+				UnshredMetrics.getInstance().addImageUnshredded();
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				if(!ImageUnshred.encode(new PermutedImage(image, result.getOrder(), result.getStripWidth()), format, bytes, result.getTimings(), null, result.getStripWidth())) {
+					// a writer for the format exists, but not for this type of image
+					send(exchange, 400, "text/plain", ("Unsupported output format " + format + " for this image").getBytes("UTF-8"));
+					return;
+				}
+				send(exchange, 200, "image/" + format, bytes.toByteArray());
+			} catch(NumberFormatException e) {
+				send(exchange, 400, "text/plain", ("Invalid number: " + e.getMessage()).getBytes("UTF-8"));
+			} catch(ExecutionException e) {
+				final Throwable cause = e.getCause();
+				final int status = cause instanceof IllegalArgumentException ? 400 : 500;
+				send(exchange, status, "text/plain", String.valueOf(cause.getMessage()).getBytes("UTF-8"));
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				send(exchange, 503, "text/plain", "Interrupted".getBytes("UTF-8"));
+			} catch(RuntimeException e) {
+				send(exchange, 500, "text/plain", String.valueOf(e.getMessage()).getBytes("UTF-8"));
+			} finally {
+				exchange.close();
+			}
+		}
+		
+	}
+	
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream stream = exchange.getResponseBody();
+		try {
+			stream.write(body);
+		} finally {
+			stream.close();
+		}
+	}
+	
+	private static Map<String, String> parseQuery(String query) throws IOException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if(query == null || query.isEmpty()) {
+			return parameters;
+		}
+		
+		for(String pair : query.split("&")) {
+			final int index = pair.indexOf('=');
+			if(index > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, index), "UTF-8"), URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+			}
+		}
+		return parameters;
+	}
+
+}
@@ -41,20 +41,29 @@ public class ImageShred {
 	
 	private int shredWidth = -1;
 	
+	private Random random = new Random();
+	
+	/**
+	 * The original strip placed at each position of the shredded image
+	 */
+	private int[] permutation;
+	
 	/**
 	 * Command line function to shred the given image into the given number of shreds.
 	 * 
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		if(args.length == 0 || args.length > 2) {
-			System.out.println("Usage: $ java -jar image-unshred.jar shred <image> <width>");
+		if(args.length < 2 || args.length > 3) {
+			System.out.println("Usage: $ java -jar image-unshred.jar shred <image> <width> <seed>");
 			System.out.println("");
 			System.out.println("    <image>    the path of the image that needs to be shredded");
 			System.out.println("    <width>    the width of the shred strip");
+			System.out.println("    <seed>     optional seed of the shuffle, to shred the same way again");
 			System.out.println("");
 			System.out.println("For an original image as original.png the shredded image is created as");
 			System.out.println("original.shredded.png. Supported image formats are GIF, JPG, and PNG.");
+			System.out.println("The shuffle is recorded as a manifest in original.shredded.truth.json.");
 			return;
 		}
 		
@@ -71,11 +80,12 @@ public class ImageShred {
 		image = image.getAbsoluteFile();
 		
 		int shredWidth = Integer.parseInt(args[1]);
+		Random random = args.length == 3 ? new Random(Long.parseLong(args[2])) : new Random();
 		
 		final long start = System.currentTimeMillis();
 		
 		try {
-			shredImage(image, shredWidth);
+			shredImage(image, shredWidth, random);
 		} catch (Exception e) {
 			System.out.println("Unable to read image from disk." + e);
 		}
@@ -93,24 +103,9 @@ public class ImageShred {
 	 * @return
 	 */
 	public static boolean shredImage(File shreddedImage, String writeToFile) {
-		int sliceWidth = -1;
 		try {
 			BufferedImage originalImage = ImageIO.read(shreddedImage);
-			final int width = originalImage.getWidth();
-			if(width % 4 == 0) {
-				sliceWidth = new Random().nextInt(5) * 4;
-				if(sliceWidth == 0) {
-					sliceWidth = 4;
-				}
-			} else if(width % 10 == 0) {
-				sliceWidth = 10;
-			} else if(width % 7 == 0) {
-				sliceWidth = new Random().nextInt(4) * 7;
-				if(sliceWidth == 0) {
-					sliceWidth = 7;
-				}
-			}
-			
+			int sliceWidth = chooseSliceWidth(originalImage.getWidth(), new Random());
 			if(sliceWidth == -1) {
 				return false;
 			}
@@ -129,6 +124,51 @@ public class ImageShred {
 		return false;
 	}
 	
+	/**
+	 * Choose a random slice width for an image of the given width. Only slice widths
+	 * that divide the image width are chosen, so that no columns are lost.
+	 * 
+	 * @param width
+	 * @param random
+	 * @return the slice width, or -1 if the image width is not a multiple of 4, 7 or 10
+	 */
+	static int chooseSliceWidth(int width, Random random) {
+		int sliceWidth = -1;
+		if(width % 4 == 0) {
+			sliceWidth = random.nextInt(5) * 4;
+			if(sliceWidth == 0 || width % sliceWidth != 0) {
+				sliceWidth = 4;
+			}
+		} else if(width % 10 == 0) {
+			sliceWidth = 10;
+		} else if(width % 7 == 0) {
+			sliceWidth = random.nextInt(4) * 7;
+			if(sliceWidth == 0 || width % sliceWidth != 0) {
+				sliceWidth = 7;
+			}
+		}
+		
+		return sliceWidth;
+	}
+	
+	/**
+	 * Shred the given image in memory into slices of the given width.
+	 * 
+	 * @param image
+	 * @param shredWidth
+	 * @return the shredded image
+	 * @throws Exception
+	 */
+	static BufferedImage shred(BufferedImage image, int shredWidth) throws Exception {
+		ImageShred shred = new ImageShred();
+		shred.originalImage = image;
+		shred.width = image.getWidth();
+		shred.height = image.getHeight();
+		shred.shredWidth = shredWidth;
+		shred.shredImage();
+		return shred.reconstructedImage;
+	}
+	
 	/**
 	 * Load the given image from disk in memory.
 	 * 
@@ -152,30 +192,35 @@ public class ImageShred {
 	 * @throws Exception
 	 */
 	private void shredImage() throws Exception {
-		// create slices
-		int slices = width / shredWidth;
-		List<BufferedImage> images = new ArrayList<BufferedImage>(slices);
+		permutation = shuffle(width / shredWidth, random);
+		
+		// create the shredded image in memory
+		reconstructedImage = RasterCopy.permuteStrips(originalImage, permutation, shredWidth);
+	}
+	
+	/**
+	 * Shuffle the given number of strips: entry <code>k</code> of the result is the
+	 * original strip placed at position <code>k</code> of the shredded image. Given
+	 * the shredded image, the original image is the strips in the order of the
+	 * inverse permutation.
+	 * 
+	 * @param slices
+	 * @param random
+	 * @return
+	 */
+	static int[] shuffle(int slices, Random random) {
+		List<Integer> order = new ArrayList<Integer>(slices);
 		for(int index = 0; index < slices; index++) {
-			int startX = index * shredWidth;
-			BufferedImage subImage = originalImage.getSubimage(startX, 0, shredWidth, height);
-			images.add(index, subImage);
+			order.add(index);
 		}
 		
-		// shuffle
-		Collections.shuffle(images);
+		Collections.shuffle(order, random);
 		
-		// create the shredded image in memory
-		int destX = 0;
-		reconstructedImage = new BufferedImage(width, height, originalImage.getType());
-		for(int index = 0; index < images.size(); index++) {
-			BufferedImage im = images.get(index);
-			for(int x = 0; x < im.getWidth(); x++) {
-				for(int y = 0; y < height; y++) {
-					reconstructedImage.setRGB(destX, y, im.getRGB(x, y));
-				}
-				destX++;
-			}
+		int[] permutation = new int[slices];
+		for(int index = 0; index < slices; index++) {
+			permutation[index] = order.get(index);
 		}
+		return permutation;
 	}
 	
 	/**
@@ -198,6 +243,9 @@ public class ImageShred {
 		String extension = fileToWriteTo.substring(index + 1);
 		ImageIO.write(reconstructedImage, extension, new File(fileToWriteTo));
 		
+		// record the shuffle, so that an unshred can be checked without the pixels
+		new Manifest(shredWidth, permutation, null).write(new File(getTruthName(fileToWriteTo)));
+		
 		System.out.println("Done shredding image " + this.originalImageFile.getAbsolutePath());
 	}
 	
@@ -209,8 +257,22 @@ public class ImageShred {
 	 * @throws Exception
 	 */
 	public static void shredImage(File imageFile, int shredWidth) throws Exception {
+		shredImage(imageFile, shredWidth, new Random());
+	}
+	
+	/**
+	 * Shred the given image file for the given shred width, shuffling the strips
+	 * with the given random number generator.
+	 * 
+	 * @param imageFile
+	 * @param shredWidth
+	 * @param random
+	 * @throws Exception
+	 */
+	public static void shredImage(File imageFile, int shredWidth, Random random) throws Exception {
 		ImageShred shred = new ImageShred();
 		shred.shredWidth = shredWidth;
+		shred.random = random;
 		shred.loadImage(imageFile);
 		
 		if(shred.width % shredWidth != 0) {
@@ -235,5 +297,18 @@ public class ImageShred {
 		String extension = filename.substring(index + 1);
 		return name + ".shredded." + extension;
 	}
+	
+	/**
+	 * Create the name of the manifest recording the shuffle of a shredded image. If
+	 * the shredded image name is original.shredded.png the manifest name is
+	 * constructed as original.shredded.truth.json
+	 * 
+	 * @param shreddedName
+	 * @return
+	 */
+	static String getTruthName(String shreddedName) {
+		int index = shreddedName.lastIndexOf('.');
+		return shreddedName.substring(0, index) + ".truth.json";
+	}
 
 }
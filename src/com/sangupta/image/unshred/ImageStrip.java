@@ -33,19 +33,22 @@ public class ImageStrip {
 	private int position;
 	
 	public ImageStrip(int position, BufferedImage stripImage) {
+		this(position, stripImage, StripEdges.read(stripImage, stripImage.getWidth()), 0);
+	}
+	
+	/**
+	 * Create a strip whose edge columns are views over the given shared edge planes.
+	 * 
+	 * @param position
+	 * @param stripImage
+	 * @param edges
+	 * @param edgeIndex
+	 */
+	public ImageStrip(int position, BufferedImage stripImage, StripEdges edges, int edgeIndex) {
 		this.position = position;
 		this.image = stripImage;
-		
-		int height = stripImage.getHeight();
-		
-		this.left = new PixelColumn(height);
-		this.right = new PixelColumn(height);
-		
-		int lastX = image.getWidth() - 1;
-		for(int y = 0; y < image.getHeight(); y++) {
-			this.left.setRGB(y, new RGB(image.getRGB(0, y)));
-			this.right.setRGB(y, new RGB(image.getRGB(lastX, y)));
-		}
+		this.left = edges.getLeft(edgeIndex);
+		this.right = edges.getRight(edgeIndex);
 	}
 
 	public void setLeft(int y, RGB rgb) {
@@ -19,38 +19,88 @@
 package com.sangupta.image.unshred;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
 
 public class ImageUnshred {
 	
+	private String imageUrl = null;
+	
 	private BufferedImage image = null;
 	
+	private StripEdges edges = null;
+	
+	private int[] order = null;
+	
 	private BufferedImage reconstructed = null;
 	
-	private static boolean LOGS_ENABLED = true;
+	private static volatile boolean LOGS_ENABLED = !Boolean.getBoolean("image.unshred.quiet");
 	
 	private int stripWidth = -1;
+	
+	private StripOrdering ordering = new DefaultOrdering();
+	
+	private long timeBudget = UnshredOptions.DEFAULT_TIME_BUDGET;
+	
+	private int candidates = UnshredOptions.DEFAULT_CANDIDATES;
+	
+	private int searchChecks = ApproximateOrdering.DEFAULT_CHECKS;
+	
+	private boolean offHeap = UnshredOptions.DEFAULT_OFF_HEAP;
+	
+	private File offHeapDirectory = UnshredOptions.DEFAULT_OFF_HEAP_DIRECTORY;
+	
+	/**
+	 * Memory of the edges and costs of the current run, when kept off-heap
+	 */
+	private OffHeapArena arena = null;
+	
+	private double[] seamCosts = null;
+	
+	private final PhaseTimings timings = new PhaseTimings();
+	
+	public ImageUnshred() {
+		
+	}
+	
+	/**
+	 * Create an unshredder for the given strip width, -1 to auto-detect it.
+	 * 
+	 * @param stripWidth
+	 */
+	ImageUnshred(int stripWidth) {
+		this.stripWidth = stripWidth;
+	}
 
 	/**
 	 * @param args
 	 */
 	public static void main(String[] args) throws Exception {
-		if(args.length == 0 || args.length > 2) {
-			System.out.println("Usage: $ java -jar image-unshred.jar unshred <image> <width>");
+		if(args.length == 0 || args.length > 4) {
+			System.out.println("Usage: $ java -jar image-unshred.jar unshred <image> <width> <budget> <output>");
 			System.out.println("");
 			System.out.println("    <image>    the path of the image that needs to be un-shredded");
 			System.out.println("    <width>    the width of the shred strip, if known ");
 			System.out.println("               if not known, the program will try and auto-detect the value ");
+			System.out.println("               use auto to auto-detect and still provide a budget ");
+			System.out.println("    <budget>   the time budget for ordering the strips in ms, defaults to " + UnshredOptions.DEFAULT_TIME_BUDGET);
+			System.out.println("    <output>   image to write the reconstructed image (the default), or json or");
+			System.out.println("               manifest to only write the strip order as a JSON or binary manifest");
 			System.out.println("");
 			System.out.println("For an original image as original.png the reconstructed image is created as");
-			System.out.println("original.reconstructed.png. Supported image formats are GIF, JPG, and PNG.");
+			System.out.println("original.reconstructed.png, and the manifest as original.manifest.json or");
+			System.out.println("original.manifest. Supported image formats are GIF, JPG, and PNG.");
 			return;
 		}
 		
@@ -68,29 +118,58 @@ public class ImageUnshred {
 		}
 
 		ImageUnshred unshredder = new ImageUnshred();
-		if(args.length == 2) {
+		if(args.length >= 2 && !"auto".equalsIgnoreCase(args[1])) {
 			int stripWidth = Integer.parseInt(args[1]);
 			unshredder.stripWidth = stripWidth;
 		}
 		
-		final long start = System.currentTimeMillis(); 
-		// load the image
-		unshredder.loadImage(imageUrl);
+		if(args.length >= 3) {
+			unshredder.timeBudget = Long.parseLong(args[2]);
+		}
 		
-		// find the width of the strip
-		unshredder.findStripWidth();
+		final String output = args.length == 4 ? args[3].toLowerCase() : "image";
+		if(!"image".equals(output) && !"json".equals(output) && !"manifest".equals(output)) {
+			System.out.println("Unknown output " + args[3] + ", use image, json or manifest.");
+			return;
+		}
+		
+		final long start = System.currentTimeMillis(); 
+		if(unshredder.stripWidth != -1) {
+			// matching only needs the strip edges
+			unshredder.loadEdges(imageUrl);
+		} else {
+			// load the image
+			unshredder.loadImage(imageUrl);
+			
+			// find the width of the strip
+			unshredder.findStripWidth();
+		}
 		
 		// unshred the image
 		unshredder.unshred();
+		
+		if(!"image".equals(output)) {
+			// the strip order alone needs neither the full pixels nor an encoder
+			final long end = System.currentTimeMillis();
+			log("Total time taken: %d ms.", end - start);
+			
+			String manifestName = getManifestName(file.getAbsolutePath(), "json".equals(output));
+			unshredder.writeManifest(manifestName);
+			log("Manifest written to disk as %s", manifestName);
+			return;
+		}
+		
+		// the strips are copied from the full pixels as the image is written
+		unshredder.reconstruct(false);
 		final long end = System.currentTimeMillis();
 		
-		log("Total time taken: " + (end - start) + " ms.");
+		log("Total time taken: %d ms.", end - start);
 		
 		// write the reconstructed image to disk
 		File fileToWrite = new File(imageUrl);
 		unshredder.writeReconstructed(getUnshreddedImageName(fileToWrite.getAbsolutePath()));
 		
-		log("Reconstructed image written to disk as " + fileToWrite.getAbsolutePath());
+		log("Reconstructed image written to disk as %s", fileToWrite.getAbsolutePath());
 	}
 	
 	public static boolean unshredImage(String shreddedImagePath, String reconstructedImage) {
@@ -100,103 +179,321 @@ public class ImageUnshred {
 			unshredder.loadImage(shreddedImage.getAbsolutePath());
 			unshredder.findStripWidth();
 			unshredder.unshred();
+			unshredder.reconstruct(false);
 			unshredder.writeReconstructed(reconstructedImage);
 			return true;
 		} catch(Exception e) {
+			System.out.println("Unable to unshred image " + shreddedImage.getAbsolutePath() + ": " + e);
 		}
 		return false;
 	}
+	
+	/**
+	 * Unshred the given image in memory.
+	 * 
+	 * @param image
+	 *            the shredded image
+	 * 
+	 * @param options
+	 *            the options to use, or <code>null</code> for the defaults
+	 * 
+	 * @return the strip order, strip width, seam costs and, if requested, the
+	 *         reconstructed image
+	 */
+	public static UnshredResult unshred(BufferedImage image, UnshredOptions options) {
+		if(options == null) {
+			options = new UnshredOptions();
+		}
+		
+		final int stripWidth = options.getStripWidth();
+		if(stripWidth == 0 || stripWidth < -1 || stripWidth > image.getWidth()) {
+			throw new IllegalArgumentException("Invalid strip width " + stripWidth + " for image of width " + image.getWidth());
+		}
+		
+		ImageUnshred unshredder = new ImageUnshred(stripWidth);
+		unshredder.ordering = options.getOrdering();
+		unshredder.timeBudget = options.getTimeBudget();
+		unshredder.candidates = options.getCandidates();
+		unshredder.searchChecks = options.getSearchChecks();
+		unshredder.offHeap = options.isOffHeap();
+		unshredder.offHeapDirectory = options.getOffHeapDirectory();
+		unshredder.image = image;
+		
+		// the same pixels unshredded before skip straight to reconstruction
+		final ResultCache cache = ResultCache.accepts(options) ? ResultCache.getDefault() : null;
+		String key = null;
+		Manifest entry = null;
+		if(cache != null) {
+			key = ResultCache.key(image, options);
+			entry = cache.get(key);
+		}
+		
+		if(entry != null) {
+			unshredder.stripWidth = entry.getStripWidth();
+			unshredder.order = entry.getOrder().clone();
+			unshredder.seamCosts = entry.getSeamCosts().clone();
+		} else {
+			unshredder.findStripWidth();
+			unshredder.unshred();
+			if(cache != null) {
+				cache.put(key, new Manifest(unshredder.stripWidth, unshredder.order.clone(), unshredder.seamCosts.clone()));
+			}
+		}
+		
+		if(options.isReconstruct()) {
+			unshredder.placeStrips();
+		}
+		
+		return new UnshredResult(unshredder.stripWidth, unshredder.order, unshredder.seamCosts, unshredder.reconstructed, unshredder.timings);
+	}
+	
+	/**
+	 * Unshred the image held by the given raster in memory. The raster must hold
+	 * packed RGB(A) pixels, or interleaved gray, RGB or RGBA bytes.
+	 * 
+	 * @param raster
+	 * @param options
+	 *            the options to use, or <code>null</code> for the defaults
+	 * 
+	 * @return
+	 */
+	public static UnshredResult unshred(Raster raster, UnshredOptions options) {
+		return unshred(RasterImages.wrap(raster), options);
+	}
+	
+	/**
+	 * Unshred the image held by the given packed ARGB pixels, as returned by
+	 * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}, in memory.
+	 * The pixels are used in place and not copied.
+	 * 
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @param options
+	 *            the options to use, or <code>null</code> for the defaults
+	 * 
+	 * @return
+	 */
+	public static UnshredResult unshred(int[] pixels, int width, int height, UnshredOptions options) {
+		return unshred(RasterImages.wrap(pixels, width, height), options);
+	}
 
 	/**
-	 * Write the reconstructed image to the given file on disk.
+	 * Write the reconstructed image to the given file on disk. If the image was
+	 * not built, the strips are streamed from the shredded image to the encoder.
 	 * 
 	 * @param fileName
 	 * @throws IOException
 	 */
-	private void writeReconstructed(String fileName) throws IOException {
+	void writeReconstructed(String fileName) throws IOException {
 		int index = fileName.lastIndexOf('.');
 		String extension = fileName.substring(index + 1);
-		if(this.reconstructed != null) {
-			ImageIO.write(this.reconstructed, extension, new File(fileName));
+		RenderedImage output = this.reconstructed;
+		if(output == null && this.image != null && this.order != null) {
+			output = new PermutedImage(this.image, this.order, this.stripWidth);
+		}
+		
+		if(output != null && canEncode(extension)) {
+			OutputStream stream = new BufferedOutputStream(new FileOutputStream(fileName));
+			try {
+				encode(output, extension, stream, this.timings, this.imageUrl, this.stripWidth);
+			} finally {
+				stream.close();
+			}
 		}
 	}
 
-	private void unshred() {
+	/**
+	 * Whether images can be encoded in the given format.
+	 * 
+	 * @param format
+	 * @return
+	 */
+	static boolean canEncode(String format) {
+		return ImageIO.getImageWritersByFormatName(format).hasNext();
+	}
+
+	/**
+	 * Encode the reconstructed image to the given stream, timing the encode and
+	 * counting the bytes written. The stream is left open.
+	 * 
+	 * @param output
+	 * @param format
+	 * @param stream
+	 * @param timings
+	 * @param image
+	 *            the name of the image the timings are recorded for
+	 * @param stripWidth
+	 * 
+	 * @return <code>false</code> if there is no encoder for the format
+	 * 
+	 * @throws IOException
+	 */
+	static boolean encode(RenderedImage output, String format, OutputStream stream, PhaseTimings timings, String image, int stripWidth) throws IOException {
+		ImageOutputStream imageStream = ImageIO.createImageOutputStream(stream);
+		try {
+			PhaseTimings.Timer timer = timings.start(Phase.ENCODE, image);
+			if(!ImageIO.write(output, format, imageStream)) {
+				return false;
+			}
+			
+			imageStream.flush();
+			timer.stop(stripWidth);
+			UnshredMetrics.getInstance().addBytesWritten(imageStream.getStreamPosition());
+			return true;
+		} finally {
+			imageStream.close();
+		}
+	}
+
+	/**
+	 * Write the strip width, order and seam costs to the given file, as JSON if
+	 * the name ends in <code>.json</code> and in binary otherwise.
+	 * 
+	 * @param fileName
+	 * @throws IOException
+	 */
+	void writeManifest(String fileName) throws IOException {
+		PhaseTimings.Timer timer = this.timings.start(Phase.ENCODE, this.imageUrl);
+		File file = new File(fileName);
+		new Manifest(this.stripWidth, this.order, this.seamCosts).write(file);
+		timer.stop(this.stripWidth);
+		UnshredMetrics.getInstance().addBytesWritten(file.length());
+	}
+
+	void unshred() {
+		try {
+			match();
+		} finally {
+			closeArena();
+		}
+	}
+	
+	private void match() {
 		log("unshredding starts...");
 		
-		final int width = image.getWidth();
-		final int height = image.getHeight();
-		
-		// number of columns in the image
-		final int columns = width / this.stripWidth;
-		log("total columns: " + columns);
-		
-		// read each strip
-		log("reading strips...");
-		ImageStrip[] strips = new ImageStrip[columns];
-		for(int column = 0; column < columns; column++) {
-			final int leftX = column * stripWidth;
-			ImageStrip is = new ImageStrip(column, image.getSubimage(leftX, 0, stripWidth, height));
-			strips[column] = is;
+		// read the edges of each strip, unless only the edges were loaded
+		if(this.edges == null) {
+			log("reading strips...");
+			PhaseTimings.Timer timer = this.timings.start(Phase.EXTRACT, this.imageUrl);
+			this.edges = StripEdges.read(image, this.stripWidth, openArena());
+			timer.stop(this.stripWidth);
 		}
 		
-		// start matching
-		log("start unshredding...");
-		List<ImageStrip> sorted = new ArrayList<ImageStrip>();
-		sorted.add(strips[0]);
-		strips[0].setUsed(true);
+		PhaseTimings.Timer timer = this.timings.start(Phase.MATCH, this.imageUrl);
 		
-		for(int index = 1; index < strips.length; index++) {
-			int leftIndex = -1, rightIndex = -1;
-			double minRightScore = Double.MAX_VALUE, minLeftScore = Double.MAX_VALUE;
-			
-			ImageStrip leftStrip = sorted.get(0);
-			ImageStrip rightStrip = sorted.get(sorted.size() - 1);
-			
-			for(int testIndex = 1; testIndex < strips.length; testIndex++) {
-				ImageStrip testStrip = strips[testIndex];
-				if(testStrip.isUsed()) {
-					continue;
-				}
-				
-				double leftScore = leftStrip.getLeft().averageDistance(testStrip.getRight());
-				double rightScore = rightStrip.getRight().averageDistance(testStrip.getLeft());
-				
-				if(leftScore < minLeftScore) {
-					minLeftScore = leftScore;
-					leftIndex = testIndex;
-				}
-				
-				if(rightScore < minRightScore) {
-					minRightScore = rightScore;
-					rightIndex = testIndex;
-				}
+		final int strips = this.edges.getStrips();
+		log("total columns: %d", strips);
+		if(strips >= ApproximateOrdering.DEFAULT_MIN_STRIPS) {
+			// too many strips for all pairs, search the neighbours instead: without a
+			// cost matrix there is nothing for the ordering engine to work on, and the
+			// greedy placement runs to completion whatever the budget
+			log("ordering strips by neighbour search using %s kernel...", EdgeKernel.getDefault().getName());
+			if(this.ordering.getClass() != DefaultOrdering.class) {
+				log("%s does not apply to %d strips, ordering by neighbour search", this.ordering.getClass().getSimpleName(), strips);
 			}
+			ApproximateOrdering approximate = new ApproximateOrdering(this.searchChecks);
+			this.order = approximate.order(this.edges);
 			
-			if(minRightScore < minLeftScore) {
-				sorted.add(strips[rightIndex]);
-				strips[rightIndex].setUsed(true);
-			} else {
-				sorted.add(0, strips[leftIndex]);
-				strips[leftIndex].setUsed(true);
+			this.seamCosts = new double[Math.max(0, this.order.length - 1)];
+			for(int index = 0; index < this.seamCosts.length; index++) {
+				this.seamCosts[index] = this.edges.getRight(this.order[index]).averageDistance(this.edges.getLeft(this.order[index + 1]));
 			}
+			timer.stop(this.stripWidth);
+			
+			UnshredMetrics.getInstance().addEdgeComparisons(approximate.getComparisons());
+			log("Done unshredding!");
+			return;
+		}
+		
+		// compute all pairwise costs once
+		log("computing strip costs using %s kernel...", EdgeKernel.getDefault().getName());
+		CostMatrix costs = CostMatrix.compute(this.edges, this.candidates, ForkJoinPool.commonPool(), this.arena);
+		
+		// order the strips
+		log("start unshredding...");
+		this.order = costs.order(this.ordering, this.timeBudget);
+		
+		this.seamCosts = new double[Math.max(0, this.order.length - 1)];
+		for(int index = 0; index < this.seamCosts.length; index++) {
+			this.seamCosts[index] = costs.exactCost(this.order[index], this.order[index + 1]);
 		}
+		timer.stop(this.stripWidth);
+		
+		UnshredMetrics.getInstance().addEdgeComparisons(costs.getComparisons());
 		log("Done unshredding!");
+	}
+	
+	/**
+	 * Open the arena of this run if edges and costs are to be kept off-heap.
+	 * 
+	 * @return the arena, or <code>null</code> to keep them on the heap
+	 */
+	private OffHeapArena openArena() {
+		if(this.offHeap && this.arena == null) {
+			this.arena = new OffHeapArena(this.offHeapDirectory);
+		}
 		
-		// reconstruct the image
-		log("Reconstructing image...");
-		this.reconstructed = new BufferedImage(width, height, image.getType());
-		int destX = 0;
-		for(int index = 0; index < sorted.size(); index++) {
-			ImageStrip is = sorted.get(index);
-			BufferedImage im = is.getImage();
-			for(int x = 0; x < im.getWidth(); x++) {
-				for(int y = 0; y < height; y++) {
-					this.reconstructed.setRGB(destX, y, im.getRGB(x, y));
-				}
-				destX++;
-			}
+		return this.arena;
+	}
+	
+	/**
+	 * Release the off-heap memory of this run, along with the edges that lived in it.
+	 * 
+	 */
+	private void closeArena() {
+		if(this.arena == null) {
+			return;
 		}
+		
+		log("released %d KB of %s memory", this.arena.getAllocated() / 1024, this.arena.isMapped() ? "mapped" : "off-heap");
+		this.edges = null;
+		this.arena.close();
+		this.arena = null;
+	}
+	
+	/**
+	 * Reconstruct the image by placing the strips in the computed order. If only
+	 * the strip edges were loaded, the full image is read from disk now.
+	 * 
+	 * @throws IOException
+	 */
+	void reconstruct() throws IOException {
+		reconstruct(true);
+	}
+	
+	/**
+	 * Prepare the reconstructed image. If only the strip edges were loaded, the
+	 * full image is read from disk now.
+	 * 
+	 * @param build
+	 *            whether to build the image in memory, or to leave the strips in
+	 *            place until {@link #writeReconstructed(String)} streams them out
+	 * 
+	 * @throws IOException
+	 */
+	void reconstruct(boolean build) throws IOException {
+		if(this.image == null) {
+			loadImage(this.imageUrl);
+		}
+		
+		if(build) {
+			placeStrips();
+		} else {
+			UnshredMetrics.getInstance().addImageUnshredded();
+		}
+	}
+	
+	/**
+	 * Place the strips of the loaded image in the computed order.
+	 * 
+	 */
+	private void placeStrips() {
+		log("Reconstructing image...");
+		PhaseTimings.Timer timer = this.timings.start(Phase.RECONSTRUCT, this.imageUrl);
+		this.reconstructed = RasterCopy.permuteStrips(this.image, this.order, this.stripWidth);
+		timer.stop(this.stripWidth);
+		UnshredMetrics.getInstance().addImageUnshredded();
 		log("Done reconstructing!");
 	}
 	
@@ -204,98 +501,27 @@ public class ImageUnshred {
 	 * Find the width of the shred strip.
 	 *  
 	 */
-	private void findStripWidth() {
+	void findStripWidth() {
 		if(this.stripWidth != -1) {
-			log("Strip width already provided as " + this.stripWidth + ", skipping auto detection.");
+			log("Strip width already provided as %d, skipping auto detection.", this.stripWidth);
 			return;
 		}
 		
 		log("Finding strip width...");
+		PhaseTimings.Timer timer = this.timings.start(Phase.DETECT, this.imageUrl);
 		
-		final int height = image.getHeight();
-		final int width = image.getWidth();
-		
-		// from the start - scan each pixel strip vertically
-		// and then see if the distance has gone above a threshold
-		// store the value for some of the ones
-		// and then check for max mean values
-
-		// compute the max and min
-		double minDiff = Double.MAX_VALUE, maxDiff = 0, sum = 0;
-		double[] distances = new double[width + 1];
-		for(int index = 0; index < width - 1; index++) {
-			PixelColumn left = new PixelColumn(height);
-			PixelColumn right = new PixelColumn(height);
-			for(int y = 0; y < height; y++) {
-				left.setRGB(y, new RGB(image.getRGB(index, y)));
-				right.setRGB(y, new RGB(image.getRGB(index + 1, y)));
-			}
-			
-			double distance = left.averageDistance(right);
-			if(distance < minDiff) {
-				minDiff = distance;
-			}
-			if(distance > maxDiff) {
-				maxDiff = distance;
-			}
-			
-			sum += distance;
-			distances[index] = distance;
-		}
-		
-		// find the average and ratio of max/min
-		final double average = sum / width;
-		final double ratio = maxDiff / minDiff;
-		
-		// compute the comparison ratio
-		double lastAverage = average; 
-		double maxAverage = 0;
-		do {
-			int maxCount = 0;
-			double maxSum = 0;
-			for(int index = 0; index < width; index++) {
-				if(distances[index] > lastAverage) {
-					maxSum += distances[index];
-					maxCount++;
-				}
-			}
-			maxAverage = maxSum / maxCount;
-			if((maxAverage / lastAverage) < 1.75) {
-				break;
-			}
-
-			lastAverage = maxAverage;
-		} while(true);
-		
-		boolean stripWidthComputed = false;
-		double compareRatio = 2.0;
-		do {
-			for(int index = 0; index < width; index++) {
-				double distance = distances[index];
-				if(distance > average) {
-					double currentRatio = distance / minDiff;
-					if((ratio / currentRatio) < compareRatio) {
-						int stripe = index + 1;
-						
-						if(width % stripe == 0) {
-							this.stripWidth = stripe;
-							stripWidthComputed = true;
-							break;
-						}
-					}
-				}
-			}
-			
-			// unable to compute the strip width
-			// reduce the ratio by 0.5
-			compareRatio -= 0.1;
-		} while(!stripWidthComputed);
+		// one pass over the image gives the distance between every pair of
+		// neighbouring columns; strip boundaries show up as a periodic comb
+		double[] profile = ColumnProfile.compute(image);
+		this.stripWidth = StripWidthDetector.detect(profile, image.getWidth());
+		timer.stop(this.stripWidth);
+		UnshredMetrics.getInstance().addEdgeComparisons(profile.length);
 
-		if(this.stripWidth == 0) {
+		if(this.stripWidth == -1) {
 			stripWidth = 32;
 			log("Default strip width to 32 pixels");
 		} else {
-			log("Strip width found as " + this.stripWidth);
+			log("Strip width found as %d", this.stripWidth);
 		}
 	}
 
@@ -306,23 +532,100 @@ public class ImageUnshred {
 	 * @throws MalformedURLException
 	 * @throws IOException
 	 */
-	private void loadImage(String imageUrl) throws MalformedURLException, IOException {
+	void loadImage(String imageUrl) throws MalformedURLException, IOException {
 		log("loading image...");
+		this.imageUrl = imageUrl;
+		PhaseTimings.Timer timer = this.timings.start(Phase.DECODE, imageUrl);
 		File file = new File(imageUrl);
-		image = ImageIO.read(file);
+		RasterCache cache = RasterCache.getDefault();
+		if(cache != null) {
+			image = cache.read(file);
+		} else {
+			image = ImageIO.read(file);
+		}
+		timer.stop(this.stripWidth);
+		if(image == null) {
+			throw new IOException("Unable to decode image " + file.getAbsolutePath());
+		}
+		
+		UnshredMetrics.getInstance().addPixelsDecoded((long) image.getWidth() * image.getHeight());
 		log("image loaded.");
 	}
 	
 	/**
-	 * Log the given message and add a new line at the end.
+	 * Load only the edges of the strips from the given image url. The strip width
+	 * must already be known.
+	 * 
+	 * @param imageUrl
+	 * @throws IOException
+	 */
+	private void loadEdges(String imageUrl) throws IOException {
+		// a cached raster is cheaper to read than decoding just the edges
+		if(RasterCache.getDefault() != null) {
+			loadImage(imageUrl);
+			return;
+		}
+		
+		log("loading strip edges...");
+		this.imageUrl = imageUrl;
+		PhaseTimings.Timer timer = this.timings.start(Phase.DECODE, imageUrl);
+		this.edges = EdgeReader.read(new File(imageUrl), this.stripWidth, openArena());
+		timer.stop(this.stripWidth);
+		UnshredMetrics.getInstance().addPixelsDecoded(2l * this.edges.getStrips() * this.edges.getHeight());
+		log("strip edges loaded.");
+	}
+	
+	/**
+	 * Use the given in-memory image as the shredded image.
+	 * 
+	 * @param image
+	 */
+	void setImage(BufferedImage image) {
+		this.image = image;
+	}
+	
+	BufferedImage getReconstructed() {
+		return this.reconstructed;
+	}
+	
+	int getStripWidth() {
+		return this.stripWidth;
+	}
+	
+	int[] getOrder() {
+		return this.order;
+	}
+	
+	PhaseTimings getTimings() {
+		return this.timings;
+	}
+	
+	/**
+	 * Enable or disable the log messages of all unshredders.
+	 * 
+	 * @param enabled
+	 */
+	static void setLogsEnabled(boolean enabled) {
+		LOGS_ENABLED = enabled;
+	}
+	
+	/**
+	 * Log the given message and add a new line at the end. If arguments are given,
+	 * the message is a {@link String#format(String, Object...)} pattern, which is
+	 * only formatted when logs are enabled.
 	 * 
 	 * @param logMessage
+	 * @param args
 	 */
-	private static void log(String logMessage) {
+	private static void log(String logMessage, Object... args) {
 		if(!LOGS_ENABLED) {
 			return;
 		}
 		
+		if(args.length > 0) {
+			logMessage = String.format(logMessage, args);
+		}
+		
 		log(logMessage, true);
 	}
 
@@ -345,10 +648,15 @@ public class ImageUnshred {
 		}
 	}
 
-	private static String getUnshreddedImageName(String filename) {
+	static String getUnshreddedImageName(String filename) {
 		int index = filename.lastIndexOf('.');
 		String name = filename.substring(0, index);
 		String extension = filename.substring(index + 1);
 		return name + ".reconstructed." + extension;
 	}
+	
+	static String getManifestName(String filename, boolean json) {
+		int index = filename.lastIndexOf('.');
+		return filename.substring(0, index) + (json ? ".manifest.json" : ".manifest");
+	}
 }
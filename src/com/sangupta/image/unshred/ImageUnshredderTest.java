@@ -1,27 +1,64 @@
 package com.sangupta.image.unshred;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
 public class ImageUnshredderTest {
+	
+	/**
+	 * Generated image used to check coarse-to-fine matching, tall enough and with
+	 * enough strips for it to prune
+	 */
+	private static final int PRUNING_STRIPS = 96;
+	
+	private static final int PRUNING_STRIP_WIDTH = 8;
+	
+	private static final int PRUNING_HEIGHT = 1024;
+	
+	private static final long PRUNING_BUDGET = 60000;
 
 	/**
 	 * Command line invocation handler that takes in a folder and shreds all files into equal slices
 	 * and then unshreds them - once done - it compares each original image with the unshredded image
 	 * and checks if the algorithm was successful or not.
+	 * 
+	 * Images are tested concurrently. Intermediate images are kept in memory, unless the system
+	 * property <code>image.unshred.test.disk</code> is set to <code>true</code>, in which case the
+	 * shredded and reconstructed images are written to and read back from disk.
+	 * 
+	 * The strip order found by the unshredder is checked against the shuffle recorded when
+	 * shredding, which needs no pixels. Set <code>image.unshred.test.pixels</code> to
+	 * <code>true</code> to also compare the reconstructed image with the original, and
+	 * <code>image.unshred.test.seed</code> to shred the same way on every run.
 	 *  
 	 * @param args
 	 */
-	public static void main(String[] args) {
-		if(args.length != 1) {
-			System.out.println("Usage: $ java -jar image-unshred.jar test <folder>");
+	public static void main(String[] args) throws Exception {
+		if(args.length == 0 || args.length > 3) {
+			System.out.println("Usage: $ java -jar image-unshred.jar test <folder> <parallelism> <report>");
 			System.out.println("");
-			System.out.println("    <folder>    folder containing a set of original images. Supported");
-			System.out.println("                image formats are GIF, JPG and PNG");
+			System.out.println("    <folder>       folder containing a set of original images. Supported");
+			System.out.println("                   image formats are GIF, JPG and PNG");
+			System.out.println("    <parallelism>  number of images to test at the same time, defaults to");
+			System.out.println("                   the number of processors");
+			System.out.println("    <report>       optional file to write the per-image report to, as CSV");
+			System.out.println("                   or JSON depending on its extension");
 			return;
 		}
 		
@@ -36,6 +73,20 @@ public class ImageUnshredderTest {
 			return;
 		}
 		
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		if(args.length >= 2) {
+			parallelism = Integer.parseInt(args[1]);
+		}
+		
+		String report = null;
+		if(args.length == 3) {
+			report = args[2];
+		}
+		
+		final boolean disk = Boolean.getBoolean("image.unshred.test.disk");
+		final boolean pixels = Boolean.getBoolean("image.unshred.test.pixels");
+		final long seed = Long.getLong("image.unshred.test.seed", System.nanoTime());
+		
 		File[] files = folder.listFiles();
 		if(files.length == 0) {
 			System.out.println("No file found in the given folder.");
@@ -46,87 +97,313 @@ public class ImageUnshredderTest {
 		for(File file : files) {
 			file = file.getAbsoluteFile();
 			String extension = getExtension(file);
+			String name = file.getName();
+			if(name.contains(".shredded.") || name.contains(".reconstructed.")) {
+				continue;
+			}
+			
 			if("gif".equals(extension) || "jpg".equals(extension) || "png".equals(extension)) {
 				sampleFiles.add(file);
 			}
 		}
 		
 		System.out.println("Number of files to be tested: " + sampleFiles.size());
+		System.out.println("Shredding with seed " + seed);
+		
+		// messages from concurrent images would interleave
+		if(parallelism > 1) {
+			ImageUnshred.setLogsEnabled(false);
+		}
 		
 		int passed = 0, failed = 0;
 		
 		final long start = System.currentTimeMillis(); 
-		for(File file : sampleFiles) {
-			final long startImage = System.currentTimeMillis(); 
-			boolean success = testImage(file);
-			final long endImage = System.currentTimeMillis();
-			if(success) {
-				System.out.println("Image " + file.getName() + "passed test in " + (endImage - startImage) + " ms.");
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		List<Future<TestResult>> futures = new ArrayList<Future<TestResult>>();
+		for(final File file : sampleFiles) {
+			futures.add(executor.submit(new Callable<TestResult>() {
+				
+				@Override
+				public TestResult call() throws Exception {
+					// each image gets its own generator so that results do not depend on scheduling
+					return testImage(file, disk, pixels, new Random(seed * 31 + file.getName().hashCode()));
+				}
+				
+			}));
+		}
+		
+		List<TestResult> results = new ArrayList<TestResult>();
+		for(Future<TestResult> future : futures) {
+			TestResult result = future.get();
+			results.add(result);
+			
+			if(result.passed) {
+				System.out.println("Image " + result.name + " passed test in " + (long) result.totalMillis + " ms." + (result.rotation > 0 ? " Rotated by " + result.rotation + " strips." : ""));
 				passed++;
 			} else {
-				System.out.println("Image " + file.getName() + "failed test in " + (endImage - startImage) + " ms.");
+				System.out.println("Image " + result.name + " failed test in " + (long) result.totalMillis + " ms." + (result.error != null ? " " + result.error : ""));
 				failed++;
 			}
 		}
+		executor.shutdown();
+		
+		// coarse-to-fine matching must not change the order found
+		String pruning = checkPruning(seed);
+		if(pruning == null) {
+			System.out.println("Pruned matching check passed.");
+		} else {
+			System.out.println("Pruned matching check failed: " + pruning);
+			failed++;
+		}
+		
 		final long end = System.currentTimeMillis();
 		
 		System.out.println("Passed: " + passed + ", Failed: " + failed);
 		System.out.println("Test completed in " + (end - start) + " ms.");
+		
+		if(report != null) {
+			writeReport(report, results);
+			System.out.println("Report written to " + report);
+		}
 	}
 
-	private static boolean testImage(final File file) {
-		boolean success = false;
+	/**
+	 * Shred, unshred and verify the given image, timing each phase.
+	 * 
+	 * @param file
+	 * @param disk
+	 *            whether intermediate images go through the disk
+	 * 
+	 * @param pixels
+	 *            whether the reconstructed image is also compared pixel by pixel
+	 * 
+	 * @param random
+	 *            the source of the shred width and shuffle
+	 * 
+	 * @return
+	 */
+	private static TestResult testImage(final File file, final boolean disk, final boolean pixels, final Random random) {
+		TestResult result = new TestResult(file.getName());
+		final long start = System.nanoTime();
 		
 		String filename = file.getName();
 		String path = file.getParentFile().getAbsolutePath();
 
 		int index = filename.lastIndexOf('.');
-		String name = filename.substring(0, index - 1);
+		String name = filename.substring(0, index);
 		String extension = filename.substring(index + 1);
 		
-		// create a shredded image
-		String shreddedImage = path + File.separator + name + ".shredded." + extension;
-		success = ImageShred.shredImage(file, shreddedImage);
-		if(!success) {
-			return false;
+		try {
+			long phaseStart = System.nanoTime();
+			BufferedImage original = ImageIO.read(file);
+			result.decodeNanos = System.nanoTime() - phaseStart;
+			
+			// create a shredded image, keeping the shuffle as the ground truth
+			result.shredWidth = ImageShred.chooseSliceWidth(original.getWidth(), random);
+			if(result.shredWidth == -1) {
+				result.error = "image width cannot be shredded";
+				return result.finish(start);
+			}
+			int[] truth = ImageShred.shuffle(original.getWidth() / result.shredWidth, random);
+			BufferedImage shredded = RasterCopy.permuteStrips(original, truth, result.shredWidth);
+			
+			// unshred it
+			ImageUnshred unshredder = new ImageUnshred();
+			if(disk) {
+				String shreddedImage = path + File.separator + name + ".shredded." + extension;
+				ImageIO.write(shredded, extension, new File(shreddedImage));
+				File truthFile = new File(ImageShred.getTruthName(shreddedImage));
+				new Manifest(result.shredWidth, truth, null).write(truthFile);
+				
+				unshredder.loadImage(shreddedImage);
+				truth = Manifest.read(truthFile).getOrder();
+			} else {
+				unshredder.setImage(shredded);
+			}
+			
+			unshredder.findStripWidth();
+			unshredder.unshred();
+			
+			result.detectedWidth = unshredder.getStripWidth();
+			result.strips = unshredder.getOrder().length;
+			result.timings = unshredder.getTimings();
+			
+			// the order must put every strip back, up to a rotation of the whole image
+			result.rotation = result.detectedWidth == result.shredWidth ? rotation(truth, unshredder.getOrder()) : -1;
+			result.passed = result.rotation >= 0;
+			if(!pixels && !disk) {
+				return result.finish(start);
+			}
+			
+			// encode the reconstructed image
+			unshredder.reconstruct(!disk);
+			BufferedImage reconstructed;
+			if(disk) {
+				String reconstructedImage = path + File.separator + name + ".reconstructed." + extension;
+				unshredder.writeReconstructed(reconstructedImage);
+				reconstructed = pixels ? ImageIO.read(new File(reconstructedImage)) : null;
+			} else {
+				phaseStart = System.nanoTime();
+				ImageIO.write(unshredder.getReconstructed(), extension, new ByteArrayOutputStream());
+				result.timings.add(Phase.ENCODE, System.nanoTime() - phaseStart);
+				reconstructed = unshredder.getReconstructed();
+			}
+			
+			// and compare it with the original, rotated the same way
+			if(pixels && result.passed) {
+				if(disk) {
+					original = ImageIO.read(file);
+				}
+				int[] rotated = new int[truth.length];
+				for(int position = 0; position < rotated.length; position++) {
+					rotated[position] = (position + result.rotation) % rotated.length;
+				}
+				result.passed = compare(RasterCopy.permuteStrips(original, rotated, result.shredWidth), reconstructed);
+			}
+		} catch(Exception e) {
+			result.error = e.toString();
 		}
 		
-		// create the unshredded image
-		String reconstructedImage = path + File.separator + name + ".reconstructed." + extension;
-		success = ImageUnshred.unshredImage(shreddedImage, reconstructedImage);
-		if(!success) {
-			return false;
+		return result.finish(start);
+	}
+	
+	/**
+	 * Order the strips of a generated image tall enough, and with enough strips,
+	 * for the coarse-to-fine matcher to prune, and check that the order is the
+	 * same as over the exhaustively computed costs.
+	 * 
+	 * @param seed
+	 * @return <code>null</code> if the orders are the same, the reason otherwise
+	 */
+	static String checkPruning(long seed) {
+		final int candidates = 8;
+		ImageGenerator.Workload workload = ImageGenerator.generate(ImageGenerator.Content.MIXED, PRUNING_STRIPS, PRUNING_STRIP_WIDTH, PRUNING_HEIGHT, seed);
+		StripEdges edges = StripEdges.read(workload.getShredded(), PRUNING_STRIP_WIDTH);
+		
+		CostMatrix exhaustive = CostMatrix.compute(edges, ForkJoinPool.commonPool());
+		CostMatrix pruned = CostMatrix.compute(edges, candidates, ForkJoinPool.commonPool());
+		if(pruned.getComparisons() >= exhaustive.getComparisons()) {
+			return "pruning did not trigger";
 		}
 		
-		// compare original and unshredded image
-		success = compare(file, new File(reconstructedImage));
+		// a budget long enough for the refinement to run out of moves first
+		int[] expected = exhaustive.order(new DefaultOrdering(), PRUNING_BUDGET);
+		int[] order = pruned.order(new DefaultOrdering(), PRUNING_BUDGET);
+		if(!Arrays.equals(expected, order)) {
+			return "order " + Arrays.toString(order) + " instead of " + Arrays.toString(expected);
+		}
 		
-		return success;
+		return null;
+	}
+	
+	/**
+	 * Check the strip order found by the unshredder against the shuffle that created
+	 * the shredded image.
+	 * 
+	 * @param truth
+	 *            the original strip at each position of the shredded image
+	 * 
+	 * @param order
+	 *            the shredded strip at each position of the reconstructed image
+	 * 
+	 * @return the number of strips the reconstructed image is rotated to the left by,
+	 *         0 if it is the original image, or -1 if it is not a rotation of it
+	 */
+	static int rotation(int[] truth, int[] order) {
+		final int strips = truth.length;
+		if(order.length != strips || strips == 0) {
+			return -1;
+		}
+		
+		final int rotation = truth[order[0]];
+		for(int position = 1; position < strips; position++) {
+			if(truth[order[position]] != (rotation + position) % strips) {
+				return -1;
+			}
+		}
+		return rotation;
 	}
 
-	private static boolean compare(File original, File copy) {
+	private static boolean compare(BufferedImage im1, BufferedImage im2) {
+		final int width = im1.getWidth();
+		final int height = im1.getHeight();
+		if(width != im2.getWidth() || height != im2.getHeight()) {
+			return false;
+		}
+		
+		int[] row1 = new int[width];
+		int[] row2 = new int[width];
+		for(int y = 0; y < height; y++) {
+			im1.getRGB(0, y, width, 1, row1, 0, width);
+			im2.getRGB(0, y, width, 1, row2, 0, width);
+			for(int x = 0; x < width; x++) {
+				if(row1[x] != row2[x]) {
+					return false;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Write the results as CSV, or as JSON if the file name ends in <code>.json</code>.
+	 * 
+	 * @param fileName
+	 * @param results
+	 * @throws IOException
+	 */
+	private static void writeReport(String fileName, List<TestResult> results) throws IOException {
+		final boolean json = fileName.toLowerCase().endsWith(".json");
+		final Phase[] phases = Phase.values();
+		
+		PrintWriter writer = new PrintWriter(new FileWriter(fileName));
 		try {
-			BufferedImage im1 = ImageIO.read(original);
-			BufferedImage im2 = ImageIO.read(copy);
-			final int width = im1.getWidth();
-			final int height = im2.getHeight();
+			if(json) {
+				writer.println("[");
+			} else {
+				writer.print("image,passed,shredWidth,detectedWidth,strips,rotation,decodeOriginalMs");
+				for(Phase phase : phases) {
+					writer.print("," + phase.name().toLowerCase() + "Ms");
+				}
+				writer.println(",totalMs");
+			}
 			
-			for(int x = 0; x < width; x++) {
-				for(int y = 0; y < height; y++) {
-					int c1 = im1.getRGB(x, y);
-					int c2 = im2.getRGB(x, y);
-					
-					if(c1 != c2) {
-						return false;
+			for(int index = 0; index < results.size(); index++) {
+				TestResult result = results.get(index);
+				if(json) {
+					writer.print("  {\"image\": \"" + result.name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+					writer.print(", \"passed\": " + result.passed);
+					writer.print(", \"shredWidth\": " + result.shredWidth);
+					writer.print(", \"detectedWidth\": " + result.detectedWidth);
+					writer.print(", \"strips\": " + result.strips);
+					writer.print(", \"rotation\": " + result.rotation);
+					writer.print(", \"decodeOriginalMs\": " + millis(result.decodeNanos / 1000000.0));
+					for(Phase phase : phases) {
+						writer.print(", \"" + phase.name().toLowerCase() + "Ms\": " + millis(result.getMillis(phase)));
 					}
+					writer.print(", \"totalMs\": " + millis(result.totalMillis));
+					writer.println("}" + (index < results.size() - 1 ? "," : ""));
+				} else {
+					writer.print(result.name.replace(",", "_") + "," + result.passed + "," + result.shredWidth + "," + result.detectedWidth + "," + result.strips + "," + result.rotation);
+					writer.print("," + millis(result.decodeNanos / 1000000.0));
+					for(Phase phase : phases) {
+						writer.print("," + millis(result.getMillis(phase)));
+					}
+					writer.println("," + millis(result.totalMillis));
 				}
 			}
 			
-			return true;
-		} catch(Exception e) {
-			
+			if(json) {
+				writer.println("]");
+			}
+		} finally {
+			writer.close();
 		}
-		return false;
+	}
+	
+	private static String millis(double value) {
+		return String.format(Locale.US, "%.3f", value);
 	}
 
 	private static String getExtension(File file) {
@@ -137,5 +414,53 @@ public class ImageUnshredderTest {
 		
 		return file.getName().substring(index + 1);
 	}
+	
+	/**
+	 * Outcome and timings of testing one image.
+	 * 
+	 */
+	private static class TestResult {
+		
+		private final String name;
+		
+		private boolean passed;
+		
+		private int shredWidth = -1;
+		
+		private int detectedWidth = -1;
+		
+		private int strips;
+		
+		/**
+		 * Strips the reconstructed image is rotated by, or -1 if it is not the original
+		 */
+		private int rotation = -1;
+		
+		private long decodeNanos;
+		
+		private PhaseTimings timings;
+		
+		private double totalMillis;
+		
+		private String error;
+		
+		TestResult(String name) {
+			this.name = name;
+		}
+		
+		double getMillis(Phase phase) {
+			if(this.timings == null) {
+				return 0;
+			}
+			
+			return this.timings.getMillis(phase);
+		}
+		
+		TestResult finish(long start) {
+			this.totalMillis = (System.nanoTime() - start) / 1000000.0;
+			return this;
+		}
+		
+	}
 
 }
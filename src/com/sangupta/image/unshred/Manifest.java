@@ -0,0 +1,324 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * The outcome of unshredding an image without its pixels: the strip width, the
+ * strip permutation and the cost of every seam. Together with the shredded image
+ * a manifest is all that is needed to present the unshredded image, see
+ * {@link PermutedImage}, so consumers that only need the order, or only render a
+ * part of the image, can skip encoding the reconstructed image altogether.
+ * 
+ * A manifest is written either as JSON,
+ * 
+ * <pre>
+ * {"stripWidth": 32, "order": [3, 0, 2, 1], "seamCosts": [1.5000, 2.2500, 0.7500]}
+ * </pre>
+ * 
+ * or in a compact binary form: the magic number <code>0x55535253</code>, a format
+ * version, the strip width and the strip count as ints, followed by the order as
+ * ints and the seam costs as doubles, all big-endian. Files whose name ends in
+ * <code>.json</code> are JSON.
+ * 
+ */
+public class Manifest {
+	
+	private static final int MAGIC = 0x55535253;
+	
+	private static final int VERSION = 1;
+	
+	private final int stripWidth;
+	
+	private final int[] order;
+	
+	private final double[] seamCosts;
+	
+	/**
+	 * @param stripWidth
+	 * @param order
+	 *            the source strip placed at each position, from left to right
+	 * 
+	 * @param seamCosts
+	 *            the cost of each of the <code>order.length - 1</code> seams, or
+	 *            <code>null</code> if not known, as for the shuffle of a shredded
+	 *            image. Unknown costs are left out of the JSON form and written as
+	 *            zero in the binary one.
+	 */
+	public Manifest(int stripWidth, int[] order, double[] seamCosts) {
+		if(seamCosts != null && seamCosts.length != Math.max(0, order.length - 1)) {
+			throw new IllegalArgumentException("Expected " + Math.max(0, order.length - 1) + " seam costs, found " + seamCosts.length);
+		}
+		
+		this.stripWidth = stripWidth;
+		this.order = order;
+		this.seamCosts = seamCosts;
+	}
+	
+	public int getStripWidth() {
+		return stripWidth;
+	}
+	
+	public int[] getOrder() {
+		return order;
+	}
+	
+	/**
+	 * The cost of each seam, or <code>null</code> if not known.
+	 * 
+	 * @return
+	 */
+	public double[] getSeamCosts() {
+		return seamCosts;
+	}
+	
+	/**
+	 * Write the manifest to the given file, as JSON if the name ends in
+	 * <code>.json</code> and in binary otherwise.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		if(isJson(file)) {
+			FileOutputStream stream = new FileOutputStream(file);
+			try {
+				stream.write(toJson().getBytes("UTF-8"));
+			} finally {
+				stream.close();
+			}
+			return;
+		}
+		
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			write(stream);
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Write the binary form of the manifest.
+	 * 
+	 * @param output
+	 * @throws IOException
+	 */
+	public void write(DataOutput output) throws IOException {
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(this.stripWidth);
+		output.writeInt(this.order.length);
+		for(int strip : this.order) {
+			output.writeInt(strip);
+		}
+		for(int index = 0; index < this.order.length - 1; index++) {
+			output.writeDouble(this.seamCosts != null ? this.seamCosts[index] : 0);
+		}
+	}
+	
+	/**
+	 * The binary form of the manifest.
+	 * 
+	 * @return
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 12 * this.order.length);
+		try {
+			write(new DataOutputStream(bytes));
+		} catch(IOException e) {
+			// not thrown by an in-memory stream
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * The JSON form of the manifest.
+	 * 
+	 * @return
+	 */
+	public String toJson() {
+		StringBuilder builder = new StringBuilder(32 + 18 * this.order.length);
+		builder.append("{\"stripWidth\": ").append(this.stripWidth);
+		builder.append(", \"order\": [");
+		for(int index = 0; index < this.order.length; index++) {
+			builder.append(index > 0 ? ", " : "").append(this.order[index]);
+		}
+		builder.append("]");
+		if(this.seamCosts != null) {
+			builder.append(", \"seamCosts\": [");
+			for(int index = 0; index < this.seamCosts.length; index++) {
+				builder.append(index > 0 ? ", " : "").append(String.format(Locale.US, "%.4f", this.seamCosts[index]));
+			}
+			builder.append("]");
+		}
+		builder.append("}");
+		return builder.toString();
+	}
+	
+	/**
+	 * Read a manifest from the given file, as JSON if the name ends in
+	 * <code>.json</code> and in binary otherwise.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid manifest
+	 */
+	public static Manifest read(File file) throws IOException {
+		if(isJson(file)) {
+			byte[] bytes = new byte[(int) file.length()];
+			DataInputStream stream = new DataInputStream(new FileInputStream(file));
+			try {
+				stream.readFully(bytes);
+			} finally {
+				stream.close();
+			}
+			return fromJson(new String(bytes, "UTF-8"));
+		}
+		
+		DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			return read(stream);
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Read the binary form of a manifest.
+	 * 
+	 * @param input
+	 * @return
+	 * @throws IOException
+	 *             if the input cannot be read or is not a valid manifest
+	 */
+	public static Manifest read(DataInput input) throws IOException {
+		if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+			throw new IOException("Not a strip manifest");
+		}
+		
+		final int stripWidth = input.readInt();
+		final int strips = input.readInt();
+		if(strips < 0) {
+			throw new IOException("Invalid strip count " + strips);
+		}
+		
+		int[] order = new int[strips];
+		for(int index = 0; index < order.length; index++) {
+			order[index] = input.readInt();
+		}
+		double[] seamCosts = new double[Math.max(0, strips - 1)];
+		for(int index = 0; index < seamCosts.length; index++) {
+			seamCosts[index] = input.readDouble();
+		}
+		return new Manifest(stripWidth, order, seamCosts);
+	}
+	
+	/**
+	 * Parse the JSON form of a manifest, as written by {@link #toJson()}.
+	 * 
+	 * @param json
+	 * @return
+	 * @throws IOException
+	 *             if the text is not a valid manifest
+	 */
+	public static Manifest fromJson(String json) throws IOException {
+		try {
+			final String width = value(json, "stripWidth");
+			final String[] strips = values(json, "order");
+			final String[] costs = values(json, "seamCosts");
+			if(width == null || strips == null) {
+				throw new IOException("Not a strip manifest: stripWidth and order are required");
+			}
+			
+			int[] order = new int[strips.length];
+			for(int index = 0; index < order.length; index++) {
+				order[index] = Integer.parseInt(strips[index]);
+			}
+			double[] seamCosts = null;
+			if(costs != null) {
+				seamCosts = new double[costs.length];
+				for(int index = 0; index < seamCosts.length; index++) {
+					seamCosts[index] = Double.parseDouble(costs[index]);
+				}
+			}
+			return new Manifest(Integer.parseInt(width), order, seamCosts);
+		} catch(RuntimeException e) {
+			throw new IOException("Not a strip manifest: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * The text of the given scalar field of a flat JSON object, or <code>null</code>
+	 * if it is missing.
+	 * 
+	 */
+	private static String value(String json, String field) {
+		final int start = valueStart(json, field);
+		if(start < 0) {
+			return null;
+		}
+		
+		int end = start;
+		while(end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}') {
+			end++;
+		}
+		return json.substring(start, end).trim();
+	}
+	
+	/**
+	 * The elements of the given array field of a flat JSON object, or
+	 * <code>null</code> if it is missing.
+	 * 
+	 */
+	private static String[] values(String json, String field) {
+		int start = valueStart(json, field);
+		if(start < 0) {
+			return null;
+		}
+		
+		start = json.indexOf('[', start) + 1;
+		final String values = json.substring(start, json.indexOf(']', start)).trim();
+		return values.length() == 0 ? new String[0] : values.split("\\s*,\\s*");
+	}
+	
+	private static int valueStart(String json, String field) {
+		final int start = json.indexOf("\"" + field + "\"");
+		return start < 0 ? -1 : json.indexOf(':', start) + 1;
+	}
+	
+	private static boolean isJson(File file) {
+		return file.getName().toLowerCase().endsWith(".json");
+	}
+	
+}
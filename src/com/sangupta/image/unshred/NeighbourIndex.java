@@ -0,0 +1,274 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The neighbours of every strip ranked by cost, on one side. Rankings are built
+ * lazily, a batch at a time: a single pass over the row (or column) of the cost
+ * matrix keeps the next best neighbours in a small bounded heap, which is then
+ * sorted onto the end of the ranking of the strip. The first batch holds the
+ * {@link #FIRST_BATCH} best neighbours and each later batch doubles the ranking,
+ * so that walking down to any rank costs amortised O(N) per strip.
+ * 
+ * Walking a ranking while skipping the strips already placed replaces a full scan
+ * of the matrix for every placement. An index can either be shared by several
+ * runs over the same matrix, or be bound to the set of strips placed by a single
+ * run, in which case strips already placed are left out of new batches altogether.
+ * Instances are not thread-safe.
+ * 
+ */
+public class NeighbourIndex extends StripNeighbours {
+	
+	/**
+	 * Number of neighbours ranked when a strip is first asked for
+	 */
+	private static final int FIRST_BATCH = 8;
+	
+	private final CostMatrix costs;
+	
+	/**
+	 * Whether the neighbours are the strips placed before (to the left of) a strip
+	 */
+	private final boolean before;
+	
+	private final int size;
+	
+	/**
+	 * Strips left out of new batches, or <code>null</code>
+	 */
+	private final BitSet excluded;
+	
+	private final int[][] rankings;
+	
+	private final int[] counts;
+	
+	/**
+	 * Scratch max-heap of packed cost and strip keys
+	 */
+	private long[] heap = new long[FIRST_BATCH];
+	
+	private NeighbourIndex(CostMatrix costs, boolean before, BitSet excluded) {
+		this.costs = costs;
+		this.before = before;
+		this.excluded = excluded;
+		this.size = costs.getSize();
+		this.rankings = new int[this.size][];
+		this.counts = new int[this.size];
+	}
+	
+	/**
+	 * Index of the strips that can be placed after (to the right of) each strip.
+	 * 
+	 * @param costs
+	 * @return
+	 */
+	public static NeighbourIndex after(CostMatrix costs) {
+		return new NeighbourIndex(costs, false, null);
+	}
+	
+	/**
+	 * Index of the strips that can be placed after each strip, for a single run
+	 * whose placed strips are marked in the given set. The set may only grow.
+	 * 
+	 * @param costs
+	 * @param used
+	 * @return
+	 */
+	public static NeighbourIndex after(CostMatrix costs, BitSet used) {
+		return new NeighbourIndex(costs, false, used);
+	}
+	
+	/**
+	 * Index of the strips that can be placed before (to the left of) each strip.
+	 * 
+	 * @param costs
+	 * @return
+	 */
+	public static NeighbourIndex before(CostMatrix costs) {
+		return new NeighbourIndex(costs, true, null);
+	}
+	
+	/**
+	 * Index of the strips that can be placed before each strip, for a single run
+	 * whose placed strips are marked in the given set. The set may only grow.
+	 * 
+	 * @param costs
+	 * @param used
+	 * @return
+	 */
+	public static NeighbourIndex before(CostMatrix costs, BitSet used) {
+		return new NeighbourIndex(costs, true, used);
+	}
+	
+	@Override
+	public int get(int strip, int rank) {
+		while(this.counts[strip] <= rank) {
+			if(!extend(strip)) {
+				return -1;
+			}
+		}
+		return this.rankings[strip][rank];
+	}
+	
+	@Override
+	public double cost(int strip, int rank) {
+		return costOf(strip, get(strip, rank));
+	}
+	
+	@Override
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * Cost of placing the given neighbour next to the strip, on the side of this index.
+	 * 
+	 * @param strip
+	 * @param neighbour
+	 * @return
+	 */
+	private double costOf(int strip, int neighbour) {
+		return this.before ? this.costs.cost(neighbour, strip) : this.costs.cost(strip, neighbour);
+	}
+	
+	/**
+	 * Append the next batch of best neighbours to the ranking of the strip.
+	 * 
+	 * @param strip
+	 * @return <code>false</code> if no neighbour was left to rank
+	 */
+	private boolean extend(int strip) {
+		final int count = this.counts[strip];
+		final int batch = Math.max(FIRST_BATCH, count);
+		if(this.heap.length < batch) {
+			this.heap = new long[batch];
+		}
+		
+		// only neighbours ranked after the last one already ranked qualify
+		final long floor = count == 0 ? -1 : key(strip, this.rankings[strip][count - 1]);
+		
+		int filled = 0;
+		int ceiling = Integer.MAX_VALUE;
+		for(int other = 0; other < this.size; other++) {
+			// cheap rejection on the cost alone once the batch is full
+			final int bits = Float.floatToRawIntBits((float) (this.before ? this.costs.cost(other, strip) : this.costs.cost(strip, other)));
+			if(bits > ceiling || other == strip || (this.excluded != null && this.excluded.get(other))) {
+				continue;
+			}
+			
+			final long key = ((long) bits << 32) | other;
+			if(key <= floor) {
+				continue;
+			}
+			
+			if(filled < batch) {
+				siftUp(key, filled++);
+			} else if(key < this.heap[0]) {
+				siftDown(key, batch);
+			} else {
+				continue;
+			}
+			
+			if(filled == batch) {
+				ceiling = (int) (this.heap[0] >>> 32);
+			}
+		}
+		
+		if(filled == 0) {
+			return false;
+		}
+		Arrays.sort(this.heap, 0, filled);
+		
+		int[] ranking = this.rankings[strip];
+		if(ranking == null || ranking.length < count + filled) {
+			ranking = ranking == null ? new int[filled] : Arrays.copyOf(ranking, count + filled);
+			this.rankings[strip] = ranking;
+		}
+		for(int index = 0; index < filled; index++) {
+			ranking[count + index] = (int) this.heap[index];
+		}
+		this.counts[strip] = count + filled;
+		return true;
+	}
+	
+	/**
+	 * Sort key of a neighbour: its cost, then its strip number so that ties resolve
+	 * the same way as a scan in strip order.
+	 * 
+	 * @param strip
+	 * @param neighbour
+	 * @return
+	 */
+	private long key(int strip, int neighbour) {
+		return ((long) bits(strip, neighbour) << 32) | neighbour;
+	}
+	
+	/**
+	 * Bits of the cost of a neighbour. Costs are never negative, so their bits
+	 * compare the same way as their values.
+	 * 
+	 * @param strip
+	 * @param neighbour
+	 * @return
+	 */
+	private int bits(int strip, int neighbour) {
+		return Float.floatToRawIntBits((float) costOf(strip, neighbour));
+	}
+	
+	private void siftUp(long key, int index) {
+		while(index > 0) {
+			final int parent = (index - 1) >>> 1;
+			if(this.heap[parent] >= key) {
+				break;
+			}
+			this.heap[index] = this.heap[parent];
+			index = parent;
+		}
+		this.heap[index] = key;
+	}
+	
+	/**
+	 * Replace the largest key of a full heap with the given one.
+	 * 
+	 * @param key
+	 * @param count
+	 */
+	private void siftDown(long key, int count) {
+		int index = 0;
+		while(true) {
+			int child = 2 * index + 1;
+			if(child >= count) {
+				break;
+			}
+			if(child + 1 < count && this.heap[child + 1] > this.heap[child]) {
+				child++;
+			}
+			if(this.heap[child] <= key) {
+				break;
+			}
+			this.heap[index] = this.heap[child];
+			index = child;
+		}
+		this.heap[index] = key;
+	}
+
+}
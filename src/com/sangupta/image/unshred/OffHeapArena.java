@@ -0,0 +1,198 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap memory scoped to the unshredding of one image. The edge planes of
+ * {@link StripEdges} and the costs of {@link CostMatrix} can be allocated here
+ * instead of on the heap, so that a very large image does not fill the heap of a
+ * long-running JVM, nor make it collect gigabytes of short-lived arrays.
+ * 
+ * Memory is either allocated directly, or mapped from temporary files in a given
+ * directory so that the operating system may page it out. All of it is released
+ * when the arena is closed. Every class reading these buffers calls
+ * {@link #checkOpen()} before it does, so that using them once the arena is closed
+ * fails with an exception instead of reading freed memory. An arena belongs to
+ * one run and must not be closed while that run still reads from it.
+ * 
+ */
+public class OffHeapArena implements Closeable {
+	
+	/**
+	 * <code>sun.misc.Unsafe.invokeCleaner</code>, used to free direct buffers on
+	 * close instead of waiting for the garbage collector
+	 */
+	private static final Method INVOKE_CLEANER;
+	
+	private static final Object UNSAFE;
+	
+	static {
+		Method method = null;
+		Object unsafe = null;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			method = type.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch(Exception e) {
+			// buffers are then freed by the garbage collector
+			method = null;
+		}
+		
+		INVOKE_CLEANER = method;
+		UNSAFE = unsafe;
+	}
+	
+	private final File directory;
+	
+	private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+	
+	private final List<File> files = new ArrayList<File>();
+	
+	private long allocated;
+	
+	private volatile boolean closed;
+	
+	/**
+	 * Create an arena of direct memory.
+	 * 
+	 */
+	public OffHeapArena() {
+		this(null);
+	}
+	
+	/**
+	 * @param directory
+	 *            directory of the temporary files memory is mapped from, or
+	 *            <code>null</code> for direct memory
+	 */
+	public OffHeapArena(File directory) {
+		this.directory = directory;
+	}
+	
+	/**
+	 * Allocate a zeroed buffer of the given size, in native byte order.
+	 * 
+	 * @param bytes
+	 * @return
+	 */
+	public synchronized ByteBuffer allocate(int bytes) {
+		checkOpen();
+		
+		ByteBuffer buffer = this.directory == null ? ByteBuffer.allocateDirect(bytes) : map(bytes);
+		buffer.order(ByteOrder.nativeOrder());
+		
+		this.buffers.add(buffer);
+		this.allocated += bytes;
+		return buffer;
+	}
+	
+	private ByteBuffer map(int bytes) {
+		try {
+			if(!this.directory.exists()) {
+				this.directory.mkdirs();
+			}
+			
+			File file = File.createTempFile("unshred", ".mem", this.directory);
+			this.files.add(file);
+			
+			RandomAccessFile access = new RandomAccessFile(file, "rw");
+			try {
+				access.setLength(bytes);
+				return access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+			} finally {
+				access.close();
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException("Unable to map off-heap memory in " + this.directory.getAbsolutePath(), e);
+		}
+	}
+	
+	/**
+	 * Fail if the arena has been closed and its memory released.
+	 * 
+	 */
+	public void checkOpen() {
+		if(this.closed) {
+			throw new IllegalStateException("Off-heap arena has been closed");
+		}
+	}
+	
+	/**
+	 * Number of bytes allocated from this arena.
+	 * 
+	 * @return
+	 */
+	public synchronized long getAllocated() {
+		return this.allocated;
+	}
+	
+	public boolean isMapped() {
+		return this.directory != null;
+	}
+
+	/**
+	 * Release all memory of the arena and delete its files.
+	 * 
+	 */
+	@Override
+	public synchronized void close() {
+		if(this.closed) {
+			return;
+		}
+		
+		this.closed = true;
+		for(ByteBuffer buffer : this.buffers) {
+			free(buffer);
+		}
+		this.buffers.clear();
+		
+		for(File file : this.files) {
+			file.delete();
+		}
+		this.files.clear();
+	}
+	
+	private static void free(ByteBuffer buffer) {
+		if(INVOKE_CLEANER == null) {
+			return;
+		}
+		
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, buffer);
+		} catch(Exception e) {
+			// left to the garbage collector
+		}
+	}
+
+}
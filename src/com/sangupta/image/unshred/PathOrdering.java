@@ -0,0 +1,268 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.BitSet;
+
+/**
+ * Heuristic minimum-cost Hamiltonian path over the strips. A set of starting paths
+ * is built by nearest-neighbour construction (plus the classic greedy ordering),
+ * and the cheapest one is then refined with 2-opt segment reversals and Or-opt
+ * segment moves until no improving move is left or the time budget runs out.
+ * 
+ */
+public class PathOrdering implements StripOrdering {
+	
+	/**
+	 * Longest segment moved as a unit by Or-opt
+	 */
+	private static final int MAX_SEGMENT = 3;
+	
+	@Override
+	public int[] order(CostMatrix costs, long budgetMillis) {
+		final long start = System.nanoTime();
+		final long deadline = start + budgetMillis * 1000000l;
+		
+		// construction gets at most half of the budget
+		final long constructionDeadline = start + budgetMillis * 500000l;
+		
+		int[] best = new GreedyOrdering().order(costs, budgetMillis);
+		double bestCost = pathCost(costs, best);
+		
+		// the neighbour rankings are shared by all constructions
+		final int size = costs.getSize();
+		NeighbourIndex after = NeighbourIndex.after(costs);
+		for(int seed = 0; seed < size && System.nanoTime() < constructionDeadline; seed++) {
+			int[] candidate = nearestNeighbour(after, seed);
+			double cost = pathCost(costs, candidate);
+			if(cost < bestCost) {
+				best = candidate;
+				bestCost = cost;
+			}
+		}
+		
+		// refine until neither move finds an improvement
+		boolean improved = true;
+		while(improved && System.nanoTime() < deadline) {
+			improved = twoOpt(costs, best, deadline);
+			improved = orOpt(costs, best, deadline) || improved;
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Total cost of the given path.
+	 * 
+	 * @param costs
+	 * @param order
+	 * @return
+	 */
+	public static double pathCost(CostMatrix costs, int[] order) {
+		double total = 0;
+		for(int index = 1; index < order.length; index++) {
+			total += costs.cost(order[index - 1], order[index]);
+		}
+		return total;
+	}
+	
+	/**
+	 * Build a path starting at the given strip by always appending the cheapest
+	 * unused strip to its right end.
+	 * 
+	 * @param after
+	 * @param seed
+	 * @return
+	 */
+	private static int[] nearestNeighbour(NeighbourIndex after, int seed) {
+		final int size = after.getSize();
+		BitSet used = new BitSet(size);
+		int[] order = new int[size];
+		order[0] = seed;
+		used.set(seed);
+		
+		for(int position = 1; position < size; position++) {
+			final int last = order[position - 1];
+			final int next = after.get(last, after.next(last, 0, used));
+			
+			order[position] = next;
+			used.set(next);
+		}
+		
+		return order;
+	}
+	
+	/**
+	 * Apply improving segment reversals to the path in place. As the costs are
+	 * not symmetric, reversing a segment changes the cost of its inner links too;
+	 * prefix sums of the forward and backward link costs make each move O(1) to
+	 * evaluate.
+	 * 
+	 * @param costs
+	 * @param order
+	 * @param deadline
+	 * @return <code>true</code> if the path was improved
+	 */
+	private static boolean twoOpt(CostMatrix costs, int[] order, long deadline) {
+		final int size = order.length;
+		double[] forward = new double[size];
+		double[] backward = new double[size];
+		prefixSums(costs, order, forward, backward);
+		
+		boolean improved = false;
+		for(int i = 0; i < size - 1; i++) {
+			if(System.nanoTime() >= deadline) {
+				break;
+			}
+			
+			for(int j = i + 1; j < size; j++) {
+				double before = forward[j] - forward[i];
+				double after = backward[j] - backward[i];
+				if(i > 0) {
+					before += costs.cost(order[i - 1], order[i]);
+					after += costs.cost(order[i - 1], order[j]);
+				}
+				if(j < size - 1) {
+					before += costs.cost(order[j], order[j + 1]);
+					after += costs.cost(order[i], order[j + 1]);
+				}
+				
+				if(after < before - 1e-9) {
+					reverse(order, i, j);
+					prefixSums(costs, order, forward, backward);
+					improved = true;
+				}
+			}
+		}
+		
+		return improved;
+	}
+	
+	private static void prefixSums(CostMatrix costs, int[] order, double[] forward, double[] backward) {
+		forward[0] = 0;
+		backward[0] = 0;
+		for(int index = 1; index < order.length; index++) {
+			forward[index] = forward[index - 1] + costs.cost(order[index - 1], order[index]);
+			backward[index] = backward[index - 1] + costs.cost(order[index], order[index - 1]);
+		}
+	}
+	
+	private static void reverse(int[] order, int from, int to) {
+		while(from < to) {
+			int temp = order[from];
+			order[from++] = order[to];
+			order[to--] = temp;
+		}
+	}
+	
+	/**
+	 * Apply improving moves of short segments to another position in the path,
+	 * in place.
+	 * 
+	 * @param costs
+	 * @param order
+	 * @param deadline
+	 * @return <code>true</code> if the path was improved
+	 */
+	private static boolean orOpt(CostMatrix costs, int[] order, long deadline) {
+		final int size = order.length;
+		boolean improved = false;
+		
+		for(int length = 1; length <= MAX_SEGMENT && length < size; length++) {
+			for(int i = 0; i + length <= size; i++) {
+				if(System.nanoTime() >= deadline) {
+					return improved;
+				}
+				
+				final int end = i + length - 1;
+				final int head = order[i], tail = order[end];
+				
+				// what removing the segment saves
+				double removal = 0;
+				if(i > 0) {
+					removal += costs.cost(order[i - 1], head);
+				}
+				if(end < size - 1) {
+					removal += costs.cost(tail, order[end + 1]);
+				}
+				if(i > 0 && end < size - 1) {
+					removal -= costs.cost(order[i - 1], order[end + 1]);
+				}
+				
+				// the cheapest place to put it back, expressed as the index of
+				// the element it will follow (-1 for the front of the path)
+				double bestInsertion = removal;
+				int bestAfter = -2;
+				
+				if(i > 0) {
+					double insertion = costs.cost(tail, order[0]);
+					if(insertion < bestInsertion - 1e-9) {
+						bestInsertion = insertion;
+						bestAfter = -1;
+					}
+				}
+				
+				for(int k = 0; k < size; k++) {
+					if(k >= i - 1 && k <= end) {
+						continue;
+					}
+					
+					double insertion = costs.cost(order[k], head);
+					if(k < size - 1 && k + 1 != i) {
+						insertion += costs.cost(tail, order[k + 1]) - costs.cost(order[k], order[k + 1]);
+					}
+					
+					if(insertion < bestInsertion - 1e-9) {
+						bestInsertion = insertion;
+						bestAfter = k;
+					}
+				}
+				
+				if(bestAfter != -2) {
+					moveSegment(order, i, length, bestAfter);
+					improved = true;
+				}
+			}
+		}
+		
+		return improved;
+	}
+	
+	/**
+	 * Move the segment starting at <code>from</code> so that it follows the element
+	 * currently at index <code>after</code>, or goes to the front if that is -1.
+	 * 
+	 */
+	private static void moveSegment(int[] order, int from, int length, int after) {
+		int[] segment = new int[length];
+		System.arraycopy(order, from, segment, 0, length);
+		
+		if(after < from) {
+			// shift the elements in between to the right
+			final int target = after + 1;
+			System.arraycopy(order, target, order, target + length, from - target);
+			System.arraycopy(segment, 0, order, target, length);
+		} else {
+			// shift the elements in between to the left
+			System.arraycopy(order, from + length, order, from, after - from - length + 1);
+			System.arraycopy(segment, 0, order, after - length + 1, length);
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.DataBuffer;
+
+/**
+ * A data buffer that reads and writes through to the data buffer of a shredded
+ * image, moving every element to the strip it belongs to in the unshredded image.
+ * Nothing is copied: each access maps the element index of a pixel in the
+ * unshredded image to the index of the same pixel in the shredded one.
+ * 
+ * The mapping relies on the elements of a pixel sitting at a fixed stride along
+ * a row, which holds for packed pixels and for interleaved or banded components.
+ * Columns past the last complete strip read as zero and ignore writes.
+ * 
+ */
+class PermutedDataBuffer extends DataBuffer {
+	
+	private final DataBuffer source;
+	
+	private final int[] order;
+	
+	private final int stripWidth;
+	
+	private final int scanlineStride;
+	
+	private final int pixelStride;
+	
+	/**
+	 * Column of the sample model holding the first column of the image
+	 */
+	private final int originX;
+	
+	/**
+	 * Number of columns of the image covered by strips
+	 */
+	private final int limit;
+	
+	private final int width;
+	
+	/**
+	 * @param source
+	 * @param order
+	 * @param stripWidth
+	 * @param scanlineStride
+	 * @param pixelStride
+	 * @param originX
+	 *            the column of the sample model holding the first column of the image
+	 * 
+	 * @param width
+	 *            the width of the image
+	 */
+	PermutedDataBuffer(DataBuffer source, int[] order, int stripWidth, int scanlineStride, int pixelStride, int originX, int width) {
+		super(source.getDataType(), source.getSize(), source.getNumBanks());
+		this.source = source;
+		this.order = order;
+		this.stripWidth = stripWidth;
+		this.scanlineStride = scanlineStride;
+		this.pixelStride = pixelStride;
+		this.originX = originX;
+		this.limit = Math.min(width, order.length * stripWidth);
+		this.width = width;
+	}
+	
+	/**
+	 * Index in the source buffer of the given element of the unshredded image.
+	 * 
+	 * @param index
+	 * @return the index, or -1 for an element past the last complete strip
+	 */
+	private int map(int index) {
+		final int column = index % this.scanlineStride;
+		final int x = column / this.pixelStride - this.originX;
+		if(x < 0 || x >= this.width) {
+			// outside of the image, in a larger parent raster
+			return index;
+		}
+		if(x >= this.limit) {
+			return -1;
+		}
+		
+		final int position = x / this.stripWidth;
+		return index + (this.order[position] - position) * this.stripWidth * this.pixelStride;
+	}
+
+	@Override
+	public int getElem(int bank, int index) {
+		final int mapped = map(index);
+		return mapped < 0 ? 0 : this.source.getElem(bank, mapped);
+	}
+
+	@Override
+	public void setElem(int bank, int index, int value) {
+		final int mapped = map(index);
+		if(mapped >= 0) {
+			this.source.setElem(bank, mapped, value);
+		}
+	}
+
+	@Override
+	public float getElemFloat(int bank, int index) {
+		final int mapped = map(index);
+		return mapped < 0 ? 0 : this.source.getElemFloat(bank, mapped);
+	}
+
+	@Override
+	public void setElemFloat(int bank, int index, float value) {
+		final int mapped = map(index);
+		if(mapped >= 0) {
+			this.source.setElemFloat(bank, mapped, value);
+		}
+	}
+
+	@Override
+	public double getElemDouble(int bank, int index) {
+		final int mapped = map(index);
+		return mapped < 0 ? 0 : this.source.getElemDouble(bank, mapped);
+	}
+
+	@Override
+	public void setElemDouble(int bank, int index, double value) {
+		final int mapped = map(index);
+		if(mapped >= 0) {
+			this.source.setElemDouble(bank, mapped, value);
+		}
+	}
+
+}
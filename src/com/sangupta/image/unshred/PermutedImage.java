@@ -0,0 +1,296 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * The unshredded image presented as a {@link RenderedImage} over the shredded
+ * image and the strip order, without building it. The image is tiled in bands
+ * of full-width rows, and the pixels of a band are only copied out of the
+ * shredded image, strip by strip, when the band is asked for.
+ * 
+ * Writing the view with {@link javax.imageio.ImageIO} hands the encoder one band
+ * at a time: the PNG encoder asks for a row at a time, so the unshredded pixels
+ * are never resident all at once. Encoders that need the whole raster gather it
+ * themselves through {@link #getData()}.
+ * 
+ * To look at the unshredded image without copying pixels at all, for example to
+ * paint a viewport, use {@link #getRaster()} or {@link #getImage()}, which map
+ * every pixel access to the shredded image instead. The strip order can come
+ * from an {@link UnshredResult} or be read back from a {@link Manifest}.
+ * 
+ */
+public class PermutedImage implements RenderedImage {
+	
+	/**
+	 * Default number of rows in a tile
+	 */
+	public static final int DEFAULT_TILE_HEIGHT = 64;
+	
+	private final BufferedImage source;
+	
+	private final int[] order;
+	
+	private final int stripWidth;
+	
+	private final int tileHeight;
+	
+	public PermutedImage(BufferedImage source, int[] order, int stripWidth) {
+		this(source, order, stripWidth, DEFAULT_TILE_HEIGHT);
+	}
+	
+	public PermutedImage(BufferedImage source, Manifest manifest) {
+		this(source, manifest.getOrder(), manifest.getStripWidth(), DEFAULT_TILE_HEIGHT);
+	}
+	
+	/**
+	 * Create a view where the strip at position <code>k</code> is the strip
+	 * <code>order[k]</code> of the source image. Columns past the last complete
+	 * strip are empty, as with {@link RasterCopy#permuteStrips(BufferedImage, int[], int)}.
+	 * 
+	 * @param source
+	 * @param order
+	 * @param stripWidth
+	 * @param tileHeight
+	 *            the number of rows in a tile
+	 */
+	public PermutedImage(BufferedImage source, int[] order, int stripWidth, int tileHeight) {
+		if(order.length * stripWidth > source.getWidth()) {
+			throw new IllegalArgumentException("Strips do not fit in an image of width " + source.getWidth());
+		}
+		
+		this.source = source;
+		this.order = order;
+		this.stripWidth = stripWidth;
+		this.tileHeight = Math.max(1, Math.min(tileHeight, source.getHeight()));
+	}
+	
+	@Override
+	public Raster getTile(int tileX, int tileY) {
+		final int y = tileY * this.tileHeight;
+		return getData(new Rectangle(0, y, getWidth(), Math.min(this.tileHeight, getHeight() - y)));
+	}
+	
+	@Override
+	public Raster getData() {
+		return getData(getBounds());
+	}
+	
+	/**
+	 * Copy the given region of the unshredded image out of the shredded image.
+	 * Only the rows of the region are copied, and only the strips it overlaps.
+	 * 
+	 * @param region
+	 * @return
+	 */
+	@Override
+	public Raster getData(Rectangle region) {
+		final Rectangle bounds = region.intersection(getBounds());
+		if(bounds.isEmpty()) {
+			throw new IllegalArgumentException("Region " + region + " is outside of the image");
+		}
+		
+		// positions of the strips overlapping the region
+		final int first = bounds.x / this.stripWidth;
+		final int last = Math.min(this.order.length, (bounds.x + bounds.width + this.stripWidth - 1) / this.stripWidth);
+		final int[] strips = new int[Math.max(0, last - first)];
+		System.arraycopy(this.order, first, strips, 0, strips.length);
+		
+		final int left = first * this.stripWidth;
+		final int width = Math.max(bounds.x + bounds.width - left, strips.length * this.stripWidth);
+		Raster rows = this.source.getRaster().createChild(0, bounds.y, this.source.getWidth(), bounds.height, 0, 0, null);
+		WritableRaster band = rows.createCompatibleWritableRaster(width, bounds.height);
+		RasterCopy.permuteStrips(rows, strips, this.stripWidth, band);
+		
+		return band.createWritableChild(bounds.x - left, 0, bounds.width, bounds.height, bounds.x, bounds.y, null);
+	}
+	
+	@Override
+	public WritableRaster copyData(WritableRaster raster) {
+		if(raster == null) {
+			raster = this.source.getRaster().createCompatibleWritableRaster(getWidth(), getHeight());
+		}
+		
+		final Rectangle bounds = raster.getBounds().intersection(getBounds());
+		for(int y = bounds.y; y < bounds.y + bounds.height; y += this.tileHeight) {
+			raster.setRect(getData(new Rectangle(bounds.x, y, bounds.width, Math.min(this.tileHeight, bounds.y + bounds.height - y))));
+		}
+		return raster;
+	}
+	
+	/**
+	 * The unshredded image as a raster over the pixels of the shredded image, with
+	 * no pixel copied: every access is mapped to the strip the pixel comes from.
+	 * Reading through the mapping is slower than reading a copy, so this suits
+	 * rendering a viewport or sampling pixels rather than walking the whole image.
+	 * Writes go to the shredded image. Layouts that cannot be mapped, such as
+	 * several pixels packed in one element, are copied instead.
+	 * 
+	 * @return
+	 */
+	public WritableRaster getRaster() {
+		final WritableRaster raster = this.source.getRaster();
+		final SampleModel model = raster.getSampleModel();
+		
+		int scanlineStride;
+		int pixelStride;
+		if(model instanceof SinglePixelPackedSampleModel) {
+			scanlineStride = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+			pixelStride = 1;
+		} else if(model instanceof ComponentSampleModel && isInterleaved((ComponentSampleModel) model)) {
+			scanlineStride = ((ComponentSampleModel) model).getScanlineStride();
+			pixelStride = ((ComponentSampleModel) model).getPixelStride();
+		} else {
+			return copyData(null);
+		}
+		
+		final int translateX = raster.getSampleModelTranslateX();
+		final int translateY = raster.getSampleModelTranslateY();
+		DataBuffer buffer = new PermutedDataBuffer(raster.getDataBuffer(), this.order, this.stripWidth, scanlineStride, pixelStride, raster.getMinX() - translateX, getWidth());
+		WritableRaster whole = Raster.createWritableRaster(model, buffer, new Point(translateX, translateY));
+		return whole.createWritableChild(raster.getMinX(), raster.getMinY(), getWidth(), getHeight(), 0, 0, null);
+	}
+	
+	/**
+	 * The unshredded image as a {@link BufferedImage} over the raster returned by
+	 * {@link #getRaster()}, for painting with Java2D without copying the pixels.
+	 * 
+	 * @return
+	 */
+	public BufferedImage getImage() {
+		return new BufferedImage(getColorModel(), getRaster(), this.source.isAlphaPremultiplied(), null);
+	}
+	
+	/**
+	 * Whether every component of a pixel lies within the pixel stride, so that the
+	 * pixels of a row sit at a fixed stride.
+	 * 
+	 */
+	private static boolean isInterleaved(ComponentSampleModel model) {
+		for(int offset : model.getBandOffsets()) {
+			if(offset < 0 || offset >= model.getPixelStride()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private Rectangle getBounds() {
+		return new Rectangle(0, 0, getWidth(), getHeight());
+	}
+
+	@Override
+	public Vector<RenderedImage> getSources() {
+		return null;
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		return Image.UndefinedProperty;
+	}
+
+	@Override
+	public String[] getPropertyNames() {
+		return null;
+	}
+
+	@Override
+	public ColorModel getColorModel() {
+		return this.source.getColorModel();
+	}
+
+	@Override
+	public SampleModel getSampleModel() {
+		return this.source.getSampleModel().createCompatibleSampleModel(getWidth(), this.tileHeight);
+	}
+
+	@Override
+	public int getWidth() {
+		return this.source.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return this.source.getHeight();
+	}
+
+	@Override
+	public int getMinX() {
+		return 0;
+	}
+
+	@Override
+	public int getMinY() {
+		return 0;
+	}
+
+	@Override
+	public int getNumXTiles() {
+		return 1;
+	}
+
+	@Override
+	public int getNumYTiles() {
+		return (getHeight() + this.tileHeight - 1) / this.tileHeight;
+	}
+
+	@Override
+	public int getMinTileX() {
+		return 0;
+	}
+
+	@Override
+	public int getMinTileY() {
+		return 0;
+	}
+
+	@Override
+	public int getTileWidth() {
+		return getWidth();
+	}
+
+	@Override
+	public int getTileHeight() {
+		return this.tileHeight;
+	}
+
+	@Override
+	public int getTileGridXOffset() {
+		return 0;
+	}
+
+	@Override
+	public int getTileGridYOffset() {
+		return 0;
+	}
+
+}
@@ -0,0 +1,57 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+/**
+ * The phases an image goes through while being unshredded.
+ * 
+ */
+public enum Phase {
+	
+	/**
+	 * Reading and decoding the image, or just its strip edges
+	 */
+	DECODE,
+	
+	/**
+	 * Detecting the strip width
+	 */
+	DETECT,
+	
+	/**
+	 * Reading the strip edges from the decoded image
+	 */
+	EXTRACT,
+	
+	/**
+	 * Computing strip costs and their order
+	 */
+	MATCH,
+	
+	/**
+	 * Placing the strips in order
+	 */
+	RECONSTRUCT,
+	
+	/**
+	 * Encoding and writing the reconstructed image
+	 */
+	ENCODE;
+
+}
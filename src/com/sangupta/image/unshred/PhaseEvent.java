@@ -0,0 +1,46 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted for every phase of every unshred run.
+ * 
+ */
+@Name("com.sangupta.image.unshred.Phase")
+@Label("Unshred Phase")
+@Category("Image Unshredder")
+@Description("A phase of unshredding one image")
+public class PhaseEvent extends Event {
+	
+	@Label("Phase")
+	String phase;
+	
+	@Label("Image")
+	String image;
+	
+	@Label("Strip Width")
+	int stripWidth;
+
+}
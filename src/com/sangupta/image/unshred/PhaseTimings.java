@@ -0,0 +1,125 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+/**
+ * Wall-clock time spent by one unshred run in each {@link Phase}.
+ * 
+ */
+public class PhaseTimings {
+	
+	private final long[] nanos = new long[Phase.values().length];
+	
+	/**
+	 * Add the given elapsed time to a phase.
+	 * 
+	 * @param phase
+	 * @param elapsedNanos
+	 */
+	public void add(Phase phase, long elapsedNanos) {
+		this.nanos[phase.ordinal()] += elapsedNanos;
+	}
+	
+	/**
+	 * Start timing the given phase of the given image. The returned timer adds the
+	 * elapsed time to these timings and to the process-wide {@link UnshredMetrics},
+	 * and emits a {@link PhaseEvent} to the flight recorder when stopped.
+	 * 
+	 * @param phase
+	 * @param image
+	 * @return
+	 */
+	public Timer start(Phase phase, String image) {
+		return new Timer(phase, image);
+	}
+	
+	/**
+	 * Time spent in the given phase, in nanoseconds.
+	 * 
+	 * @param phase
+	 * @return
+	 */
+	public long getNanos(Phase phase) {
+		return this.nanos[phase.ordinal()];
+	}
+	
+	/**
+	 * Time spent in the given phase, in milliseconds.
+	 * 
+	 * @param phase
+	 * @return
+	 */
+	public double getMillis(Phase phase) {
+		return this.nanos[phase.ordinal()] / 1000000.0;
+	}
+	
+	/**
+	 * Total time spent across all phases, in milliseconds.
+	 * 
+	 * @return
+	 */
+	public double getTotalMillis() {
+		long total = 0;
+		for(long value : this.nanos) {
+			total += value;
+		}
+		return total / 1000000.0;
+	}
+
+	/**
+	 * A running phase.
+	 * 
+	 */
+	public class Timer {
+		
+		private final Phase phase;
+		
+		private final PhaseEvent event;
+		
+		private final long start;
+		
+		Timer(Phase phase, String image) {
+			this.phase = phase;
+			this.event = new PhaseEvent();
+			this.event.phase = phase.name();
+			this.event.image = image;
+			this.event.begin();
+			this.start = System.nanoTime();
+		}
+		
+		/**
+		 * Stop the timer, recording the phase for the given strip width.
+		 * 
+		 * @param stripWidth
+		 */
+		public void stop(int stripWidth) {
+			final long elapsed = System.nanoTime() - this.start;
+			add(this.phase, elapsed);
+			UnshredMetrics.getInstance().addPhase(this.phase, elapsed);
+			
+			this.event.end();
+			if(this.event.shouldCommit()) {
+				this.event.stripWidth = stripWidth;
+				this.event.commit();
+			}
+		}
+		
+	}
+
+}
@@ -18,19 +18,115 @@
 
 package com.sangupta.image.unshred;
 
+import java.nio.ByteBuffer;
+
+/**
+ * A single column of pixels, stored as its 8-bit U and V chroma values. The column
+ * is a view over a pair of primitive planes, so that the columns of all strips
+ * of an image can share one contiguous block of memory (see {@link StripEdges}).
+ * The planes are either arrays or, for edges kept off-heap, buffers.
+ * 
+ */
 public class PixelColumn {
 	
-	private int height;
+	private final int height;
 
-	private RGB[] rgb;
+	private final byte[] u;
+	
+	private final byte[] v;
+	
+	/**
+	 * Off-heap planes, used when the arrays are <code>null</code>
+	 */
+	private final ByteBuffer uBuffer;
+	
+	private final ByteBuffer vBuffer;
+	
+	/**
+	 * Arena the buffers were allocated from, checked before every access so that
+	 * a column never reads memory released by closing it
+	 */
+	private final OffHeapArena arena;
+	
+	private final int offset;
 	
 	public PixelColumn(int height) {
+		this(new byte[height], new byte[height], 0, height);
+	}
+	
+	/**
+	 * Create a column backed by the given planes, starting at the given offset.
+	 * 
+	 * @param u
+	 * @param v
+	 * @param offset
+	 * @param height
+	 */
+	public PixelColumn(byte[] u, byte[] v, int offset, int height) {
+		this.u = u;
+		this.v = v;
+		this.uBuffer = null;
+		this.vBuffer = null;
+		this.arena = null;
+		this.offset = offset;
+		this.height = height;
+	}
+	
+	/**
+	 * Create a column backed by the given buffers of the given arena, starting at
+	 * the given offset.
+	 * 
+	 * @param u
+	 * @param v
+	 * @param offset
+	 * @param height
+	 * @param arena
+	 */
+	public PixelColumn(ByteBuffer u, ByteBuffer v, int offset, int height, OffHeapArena arena) {
+		this.u = null;
+		this.v = null;
+		this.uBuffer = u;
+		this.vBuffer = v;
+		this.arena = arena;
+		this.offset = offset;
 		this.height = height;
-		this.rgb = new RGB[height + 1];
 	}
 	
 	public void setRGB(int y, RGB rgb) {
-		this.rgb[y] = rgb;
+		set(y, (int) rgb.getU(), (int) rgb.getV());
+	}
+	
+	public void setRGB(int y, int value) {
+		set(y, RGB.u(value), RGB.v(value));
+	}
+	
+	private void set(int y, int u, int v) {
+		if(this.u != null) {
+			this.u[this.offset + y] = (byte) u;
+			this.v[this.offset + y] = (byte) v;
+		} else {
+			this.arena.checkOpen();
+			this.uBuffer.put(this.offset + y, (byte) u);
+			this.vBuffer.put(this.offset + y, (byte) v);
+		}
+	}
+	
+	public int getU(int y) {
+		if(this.u != null) {
+			return this.u[this.offset + y] & 0xff;
+		}
+		
+		this.arena.checkOpen();
+		return this.uBuffer.get(this.offset + y) & 0xff;
+	}
+	
+	public int getV(int y) {
+		if(this.v != null) {
+			return this.v[this.offset + y] & 0xff;
+		}
+		
+		this.arena.checkOpen();
+		return this.vBuffer.get(this.offset + y) & 0xff;
 	}
 	
 	public int getHeight() {
@@ -38,11 +134,75 @@ public class PixelColumn {
 	}
 
 	public double averageDistance(PixelColumn other) {
-		double distance = 0;
-		for(int i = 0; i < this.height; i++) {
-			distance += this.rgb[i].distance(other.rgb[i]);
+		return averageDistance(other, EdgeKernel.getDefault());
+	}
+	
+	/**
+	 * Average distance to the given column, computed with the given kernel.
+	 * 
+	 * @param other
+	 * @param kernel
+	 * @return
+	 */
+	public double averageDistance(PixelColumn other, EdgeKernel kernel) {
+		return sum(other, Double.POSITIVE_INFINITY, kernel) / this.height;
+	}
+	
+	/**
+	 * Average distance to the given column, giving up once it is certain to
+	 * exceed the given bound. A value larger than the bound is then only a lower
+	 * bound of the actual average distance.
+	 * 
+	 * @param other
+	 * @param bound
+	 * @return
+	 */
+	public double averageDistance(PixelColumn other, double bound) {
+		return averageDistance(other, bound, EdgeKernel.getDefault());
+	}
+	
+	/**
+	 * Bounded average distance to the given column, computed with the given kernel.
+	 * 
+	 * @param other
+	 * @param bound
+	 * @param kernel
+	 * @return
+	 */
+	public double averageDistance(PixelColumn other, double bound, EdgeKernel kernel) {
+		return sum(other, bound * this.height, kernel) / this.height;
+	}
+	
+	/**
+	 * Sum of the distances to the given column, bounded unless the limit is
+	 * infinite, with the kernel variant matching where the two columns are kept.
+	 * 
+	 */
+	private double sum(PixelColumn other, double limit, EdgeKernel kernel) {
+		final boolean bounded = limit != Double.POSITIVE_INFINITY;
+		if(this.u != null && other.u != null) {
+			return bounded ? kernel.sum(this.u, this.v, this.offset, other.u, other.v, other.offset, this.height, limit)
+						   : kernel.sum(this.u, this.v, this.offset, other.u, other.v, other.offset, this.height);
+		}
+		
+		if(this.u == null) {
+			this.arena.checkOpen();
+		}
+		if(other.u == null) {
+			other.arena.checkOpen();
+		}
+		
+		// the distance is symmetric, so a column on the heap always goes first
+		if(this.u != null) {
+			return bounded ? kernel.sum(this.u, this.v, this.offset, other.uBuffer, other.vBuffer, other.offset, this.height, limit)
+						   : kernel.sum(this.u, this.v, this.offset, other.uBuffer, other.vBuffer, other.offset, this.height);
+		}
+		if(other.u != null) {
+			return bounded ? kernel.sum(other.u, other.v, other.offset, this.uBuffer, this.vBuffer, this.offset, this.height, limit)
+						   : kernel.sum(other.u, other.v, other.offset, this.uBuffer, this.vBuffer, this.offset, this.height);
 		}
-		return distance / this.height;
+		return bounded ? kernel.sum(this.uBuffer, this.vBuffer, this.offset, other.uBuffer, other.vBuffer, other.offset, this.height, limit)
+					   : kernel.sum(this.uBuffer, this.vBuffer, this.offset, other.uBuffer, other.vBuffer, other.offset, this.height);
 	}
 
 }
@@ -19,29 +19,86 @@
 package com.sangupta.image.unshred;
 
 
+/**
+ * A pixel along with its luma and chroma components. The components are computed
+ * in 16-bit fixed point and rounded to 8 bits, so the whole conversion and the
+ * chroma distance are integer-only.
+ * 
+ */
 public class RGB {
 	
+	/**
+	 * Distance between two chroma values, indexed by <code>(|du| << 8) | |dv|</code>
+	 */
+	private static final float[] DISTANCE = new float[256 * 256];
+	
+	static {
+		for(int du = 0; du < 256; du++) {
+			for(int dv = 0; dv < 256; dv++) {
+				DISTANCE[(du << 8) | dv] = (float) Math.sqrt(du * du + dv * dv);
+			}
+		}
+	}
+	
 	private int red;
 	
 	private int green;
 	
 	private int blue;
 	
-	private double y, u, v;
+	private int y, u, v;
 	
 	public RGB(int value) {
 		this.red = (value >> 16) & 0xff;
 		this.green = (value >> 8) & 0xff;
 		this.blue = value & 0xff;
 		
-		y = this.red *  .299000 + this.green *  .587000 + this.blue *  .114000;
-		u = this.red * -.168736 + this.green * -.331264 + this.blue *  .500000 + 128;
-		v = this.red *  .500000 + this.green * -.418688 + this.blue * -.081312 + 128;
+		this.y = (19595 * this.red + 38470 * this.green + 7471 * this.blue + 32768) >> 16;
+		this.u = u(value);
+		this.v = v(value);
+	}
+	
+	/**
+	 * Compute the U chroma component of the given packed RGB value, in the range 0 to 255.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static int u(int value) {
+		final int red = (value >> 16) & 0xff, green = (value >> 8) & 0xff, blue = value & 0xff;
+		final int u = (-11058 * red - 21710 * green + 32768 * blue + (128 << 16) + 32768) >> 16;
+		return u > 255 ? 255 : u;
+	}
+	
+	/**
+	 * Compute the V chroma component of the given packed RGB value, in the range 0 to 255.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static int v(int value) {
+		final int red = (value >> 16) & 0xff, green = (value >> 8) & 0xff, blue = value & 0xff;
+		final int v = (32768 * red - 27439 * green - 5329 * blue + (128 << 16) + 32768) >> 16;
+		return v > 255 ? 255 : v;
+	}
+	
+	/**
+	 * Distance between two pixels given their chroma components, looked up from a
+	 * precomputed table.
+	 * 
+	 * @param u1
+	 * @param v1
+	 * @param u2
+	 * @param v2
+	 * @return
+	 */
+	public static float distance(int u1, int v1, int u2, int v2) {
+		final int du = u1 - u2, dv = v1 - v2;
+		return DISTANCE[((du < 0 ? -du : du) << 8) | (dv < 0 ? -dv : dv)];
 	}
 	
 	public double distance(RGB other) {
-		double diff = ((this.u - other.u) * (this.u - other.u)) + ((this.v - other.v) * (this.v - other.v));
-		return Math.sqrt(diff);
+		return distance(this.u, this.v, other.u, other.v);
 	}
 
 	@Override
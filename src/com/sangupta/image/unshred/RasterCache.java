@@ -0,0 +1,318 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * An on-disk cache of decoded images, so that repeated runs over the same input
+ * do not pay for decoding it again.
+ * 
+ * Each image is stored as a raw file holding a small header followed by the packed
+ * ARGB pixels, in native byte order. The file is keyed by the path, size and
+ * modification time of the source image. A cache hit maps the raw file into memory
+ * and wraps the mapping as the data buffer of the returned image, without copying
+ * the pixels onto the heap. The mapping is private: pixels written to the image
+ * are copied on write and never reach the file.
+ * 
+ * The cache is enabled by pointing the system property <code>image.unshred.cache</code>
+ * to a directory. The raw files are kept under the size given in megabytes by
+ * <code>image.unshred.cache.max</code> (1024 by default), evicting the least
+ * recently used first.
+ * 
+ */
+public class RasterCache {
+	
+	private static final int MAGIC = 0x55534852;
+	
+	private static final int VERSION = 1;
+	
+	/**
+	 * Header ints: magic, version, width, height, alpha flag
+	 */
+	private static final int HEADER_INTS = 5;
+	
+	private static final int HEADER_BYTES = HEADER_INTS * 4;
+	
+	/**
+	 * Default size of the cache in megabytes
+	 */
+	private static final long DEFAULT_MAX_MEGABYTES = 1024;
+	
+	private final File directory;
+	
+	private final long maxBytes;
+	
+	public RasterCache(File directory) {
+		this(directory, DEFAULT_MAX_MEGABYTES << 20);
+	}
+	
+	/**
+	 * @param directory
+	 *            directory of the raw files
+	 * 
+	 * @param maxBytes
+	 *            total size of the raw files above which the least recently used
+	 *            are deleted
+	 */
+	public RasterCache(File directory, long maxBytes) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * Return the cache configured through system properties, or <code>null</code>
+	 * if caching is not enabled.
+	 * 
+	 * @return
+	 */
+	public static RasterCache getDefault() {
+		String path = System.getProperty("image.unshred.cache");
+		if(path == null || path.length() == 0) {
+			return null;
+		}
+		
+		return new RasterCache(new File(path), Long.getLong("image.unshred.cache.max", DEFAULT_MAX_MEGABYTES) << 20);
+	}
+	
+	/**
+	 * Read the given image, from the cache if possible. On a miss the image is
+	 * decoded and added to the cache.
+	 * 
+	 * @param imageFile
+	 * @return
+	 * @throws IOException
+	 */
+	public BufferedImage read(File imageFile) throws IOException {
+		File rawFile = getRawFile(imageFile);
+		if(rawFile.exists()) {
+			BufferedImage image = map(rawFile);
+			if(image != null) {
+				// the modification time of a raw file records its last use
+				rawFile.setLastModified(System.currentTimeMillis());
+				return image;
+			}
+		}
+		
+		BufferedImage image = ImageIO.read(imageFile);
+		if(image != null) {
+			write(image, rawFile);
+			evict();
+		}
+		
+		return image;
+	}
+	
+	/**
+	 * Delete the least recently used raw files until the cache fits its size.
+	 * 
+	 */
+	private void evict() {
+		File[] files = this.directory.listFiles();
+		if(files == null) {
+			return;
+		}
+		
+		// snapshot the times, as other processes may touch the files while sorting
+		final List<File> raws = new ArrayList<File>();
+		final Map<File, Long> used = new HashMap<File, Long>();
+		long total = 0;
+		for(File file : files) {
+			if(file.getName().endsWith(".raw")) {
+				raws.add(file);
+				used.put(file, file.lastModified());
+				total += file.length();
+			}
+		}
+		if(total <= this.maxBytes) {
+			return;
+		}
+		
+		Collections.sort(raws, new Comparator<File>() {
+			
+			@Override
+			public int compare(File file1, File file2) {
+				return used.get(file1).compareTo(used.get(file2));
+			}
+			
+		});
+		
+		for(int index = 0; index < raws.size() && total > this.maxBytes; index++) {
+			File file = raws.get(index);
+			final long length = file.length();
+			if(file.delete()) {
+				total -= length;
+			}
+		}
+	}
+	
+	/**
+	 * The raw file for the given image, keyed by its path, size and modification time.
+	 * 
+	 * @param imageFile
+	 * @return
+	 */
+	private File getRawFile(File imageFile) {
+		// 64-bit FNV-1a of the absolute path
+		String path = imageFile.getAbsolutePath();
+		long hash = 0xcbf29ce484222325l;
+		for(int index = 0; index < path.length(); index++) {
+			hash ^= path.charAt(index);
+			hash *= 0x100000001b3l;
+		}
+		
+		String name = Long.toHexString(hash) + "-" + imageFile.length() + "-" + imageFile.lastModified() + ".raw";
+		return new File(this.directory, name);
+	}
+	
+	/**
+	 * Write the pixels of the image to the given raw file. The file is written under
+	 * a temporary name and renamed once complete, so that readers never see a partial
+	 * file. Images too large to be mapped are not cached.
+	 * 
+	 */
+	private void write(BufferedImage image, File rawFile) throws IOException {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		if((long) width * height * 4 + HEADER_BYTES > Integer.MAX_VALUE) {
+			return;
+		}
+		
+		if(!this.directory.exists() && !this.directory.mkdirs()) {
+			return;
+		}
+		
+		File tempFile = File.createTempFile("raster", ".tmp", this.directory);
+		RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+			header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(image.getColorModel().hasAlpha() ? 1 : 0);
+			header.flip();
+			channel.write(header);
+			
+			int[] row = new int[width];
+			ByteBuffer buffer = ByteBuffer.allocate(width * 4).order(ByteOrder.nativeOrder());
+			for(int y = 0; y < height; y++) {
+				image.getRGB(0, y, width, 1, row, 0, width);
+				buffer.clear();
+				buffer.asIntBuffer().put(row);
+				channel.write(buffer);
+			}
+		} finally {
+			file.close();
+		}
+		
+		if(!tempFile.renameTo(rawFile)) {
+			tempFile.delete();
+		}
+	}
+	
+	/**
+	 * Map the given raw file as an image, or return <code>null</code> if the file
+	 * is not a valid raw file for this platform.
+	 * 
+	 */
+	private BufferedImage map(File rawFile) throws IOException {
+		MappedByteBuffer mapped;
+		// a private mapping needs a channel open for writing, though the file never is written
+		RandomAccessFile file = new RandomAccessFile(rawFile, "rw");
+		try {
+			mapped = file.getChannel().map(FileChannel.MapMode.PRIVATE, 0, file.length());
+		} finally {
+			// the mapping stays valid after the channel is closed
+			file.close();
+		}
+		
+		mapped.order(ByteOrder.nativeOrder());
+		if(mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+			return null;
+		}
+		
+		final int width = mapped.getInt(8);
+		final int height = mapped.getInt(12);
+		final boolean alpha = mapped.getInt(16) != 0;
+		if((long) width * height * 4 + HEADER_BYTES != mapped.capacity()) {
+			return null;
+		}
+		
+		mapped.position(HEADER_BYTES);
+		IntBuffer pixels = mapped.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+		
+		ColorModel colorModel;
+		if(alpha) {
+			colorModel = ColorModel.getRGBdefault();
+		} else {
+			colorModel = new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
+		}
+		
+		SampleModel sampleModel = colorModel.createCompatibleSampleModel(width, height);
+		WritableRaster raster = Raster.createWritableRaster(sampleModel, new MappedDataBuffer(pixels), null);
+		return new BufferedImage(colorModel, raster, false, null);
+	}
+	
+	/**
+	 * An int data buffer over a privately mapped pixel array.
+	 * 
+	 */
+	private static class MappedDataBuffer extends DataBuffer {
+		
+		private final IntBuffer pixels;
+		
+		MappedDataBuffer(IntBuffer pixels) {
+			super(DataBuffer.TYPE_INT, pixels.capacity());
+			this.pixels = pixels;
+		}
+
+		@Override
+		public int getElem(int bank, int index) {
+			return this.pixels.get(index);
+		}
+
+		@Override
+		public void setElem(int bank, int index, int value) {
+			this.pixels.put(index, value);
+		}
+		
+	}
+
+}
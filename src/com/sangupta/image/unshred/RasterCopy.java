@@ -0,0 +1,199 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Utility functions to rearrange the strips of an image with block copies of
+ * raster data, instead of going through the color model one pixel at a time.
+ * 
+ * Images backed by packed int pixels or by interleaved byte pixels are copied
+ * with one {@link System#arraycopy(Object, int, Object, int, int)} per strip row
+ * on the backing arrays. Any other layout falls back to moving data elements
+ * through the rasters in bands of rows.
+ * 
+ */
+public class RasterCopy {
+	
+	/**
+	 * Number of rows moved per call in the generic copy
+	 */
+	private static final int BAND_HEIGHT = 64;
+	
+	/**
+	 * Create an empty image with the same color model and pixel layout as the given image.
+	 * 
+	 * @param image
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static BufferedImage createCompatible(BufferedImage image, int width, int height) {
+		WritableRaster raster = image.getRaster().createCompatibleWritableRaster(width, height);
+		return new BufferedImage(image.getColorModel(), raster, image.isAlphaPremultiplied(), null);
+	}
+	
+	/**
+	 * Create a new image where the strip at position <code>k</code> is the strip
+	 * <code>order[k]</code> of the source image. Columns past the last complete
+	 * strip are left empty.
+	 * 
+	 * @param source
+	 * @param order
+	 * @param stripWidth
+	 * @return
+	 */
+	public static BufferedImage permuteStrips(BufferedImage source, int[] order, int stripWidth) {
+		BufferedImage destination = createCompatible(source, source.getWidth(), source.getHeight());
+		permuteStrips(source.getRaster(), order, stripWidth, destination.getRaster());
+		return destination;
+	}
+	
+	/**
+	 * Copy the strips of the source raster into the destination raster in the given order.
+	 * 
+	 * @param source
+	 * @param order
+	 * @param stripWidth
+	 * @param destination
+	 */
+	public static void permuteStrips(Raster source, int[] order, int stripWidth, WritableRaster destination) {
+		final DataBuffer sourceBuffer = source.getDataBuffer();
+		final DataBuffer destinationBuffer = destination.getDataBuffer();
+		
+		if(sourceBuffer instanceof DataBufferInt && destinationBuffer instanceof DataBufferInt && samePackedLayout(source, destination)) {
+			copyRows(((DataBufferInt) sourceBuffer).getData(), source, ((DataBufferInt) destinationBuffer).getData(), destination, order, stripWidth, 1);
+			return;
+		}
+		
+		if(sourceBuffer instanceof DataBufferByte && destinationBuffer instanceof DataBufferByte && sameInterleavedLayout(source, destination)) {
+			final int pixelStride = ((ComponentSampleModel) source.getSampleModel()).getPixelStride();
+			copyRows(((DataBufferByte) sourceBuffer).getData(), source, ((DataBufferByte) destinationBuffer).getData(), destination, order, stripWidth, pixelStride);
+			return;
+		}
+		
+		copyElements(source, order, stripWidth, destination);
+	}
+	
+	/**
+	 * Row by row copy on the backing arrays. Each row of the destination is filled
+	 * strip by strip, so both arrays are walked in memory order.
+	 * 
+	 */
+	private static void copyRows(Object sourceData, Raster source, Object destinationData, WritableRaster destination, int[] order, int stripWidth, int pixelStride) {
+		final int height = Math.min(source.getHeight(), destination.getHeight());
+		final int sourceStride = scanlineStride(source.getSampleModel());
+		final int destinationStride = scanlineStride(destination.getSampleModel());
+		final int sourceBase = firstElement(source, pixelStride);
+		final int destinationBase = firstElement(destination, pixelStride);
+		final int length = stripWidth * pixelStride;
+		
+		for(int y = 0; y < height; y++) {
+			final int sourceRow = sourceBase + y * sourceStride;
+			int destinationIndex = destinationBase + y * destinationStride;
+			for(int position = 0; position < order.length; position++) {
+				System.arraycopy(sourceData, sourceRow + order[position] * length, destinationData, destinationIndex, length);
+				destinationIndex += length;
+			}
+		}
+	}
+	
+	/**
+	 * Generic copy through the rasters, moving one band of rows of a strip at a time.
+	 * 
+	 */
+	private static void copyElements(Raster source, int[] order, int stripWidth, WritableRaster destination) {
+		final int height = Math.min(source.getHeight(), destination.getHeight());
+		Object data = null;
+		for(int y = 0; y < height; y += BAND_HEIGHT) {
+			final int rows = Math.min(BAND_HEIGHT, height - y);
+			for(int position = 0; position < order.length; position++) {
+				data = source.getDataElements(source.getMinX() + order[position] * stripWidth, source.getMinY() + y, stripWidth, rows, data);
+				destination.setDataElements(destination.getMinX() + position * stripWidth, destination.getMinY() + y, stripWidth, rows, data);
+			}
+		}
+	}
+	
+	private static boolean samePackedLayout(Raster source, Raster destination) {
+		if(!(source.getSampleModel() instanceof SinglePixelPackedSampleModel) || !(destination.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+			return false;
+		}
+		
+		int[] sourceMasks = ((SinglePixelPackedSampleModel) source.getSampleModel()).getBitMasks();
+		int[] destinationMasks = ((SinglePixelPackedSampleModel) destination.getSampleModel()).getBitMasks();
+		return Arrays.equals(sourceMasks, destinationMasks);
+	}
+	
+	private static boolean sameInterleavedLayout(Raster source, Raster destination) {
+		if(!(source.getSampleModel() instanceof ComponentSampleModel) || !(destination.getSampleModel() instanceof ComponentSampleModel)) {
+			return false;
+		}
+		
+		ComponentSampleModel sourceModel = (ComponentSampleModel) source.getSampleModel();
+		ComponentSampleModel destinationModel = (ComponentSampleModel) destination.getSampleModel();
+		
+		// all bands must live in a single bank and be packed within the pixel stride
+		return sourceModel.getPixelStride() == destinationModel.getPixelStride()
+				&& sourceModel.getPixelStride() == sourceModel.getNumBands()
+				&& Arrays.equals(sourceModel.getBankIndices(), new int[sourceModel.getNumBands()])
+				&& Arrays.equals(destinationModel.getBankIndices(), new int[destinationModel.getNumBands()])
+				&& Arrays.equals(sourceModel.getBandOffsets(), destinationModel.getBandOffsets());
+	}
+	
+	private static int scanlineStride(SampleModel model) {
+		if(model instanceof SinglePixelPackedSampleModel) {
+			return ((SinglePixelPackedSampleModel) model).getScanlineStride();
+		}
+		
+		return ((ComponentSampleModel) model).getScanlineStride();
+	}
+	
+	/**
+	 * Index in the backing array of the first element of the top-left pixel of the
+	 * raster, accounting for rasters that are children of a larger one.
+	 * 
+	 */
+	private static int firstElement(Raster raster, int pixelStride) {
+		final int x = raster.getMinX() - raster.getSampleModelTranslateX();
+		final int y = raster.getMinY() - raster.getSampleModelTranslateY();
+		final int stride = scanlineStride(raster.getSampleModel());
+		
+		int firstBand = 0;
+		if(raster.getSampleModel() instanceof ComponentSampleModel) {
+			int[] offsets = ((ComponentSampleModel) raster.getSampleModel()).getBandOffsets();
+			firstBand = offsets[0];
+			for(int offset : offsets) {
+				firstBand = Math.min(firstBand, offset);
+			}
+		}
+		
+		return raster.getDataBuffer().getOffset() + y * stride + x * pixelStride + firstBand;
+	}
+
+}
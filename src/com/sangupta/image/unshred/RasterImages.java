@@ -0,0 +1,107 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Utility functions to present raw pixel data as a {@link BufferedImage} without
+ * copying it.
+ * 
+ */
+public class RasterImages {
+	
+	/**
+	 * Wrap packed ARGB pixels, row after row, as an image.
+	 * 
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static BufferedImage wrap(int[] pixels, int width, int height) {
+		if(pixels.length < width * height) {
+			throw new IllegalArgumentException("Expected " + (width * height) + " pixels, got " + pixels.length);
+		}
+		
+		ColorModel colorModel = ColorModel.getRGBdefault();
+		WritableRaster raster = Raster.createWritableRaster(colorModel.createCompatibleSampleModel(width, height), new DataBufferInt(pixels, pixels.length), null);
+		return new BufferedImage(colorModel, raster, false, null);
+	}
+	
+	/**
+	 * Wrap the given raster as an image. Packed int pixels are read as RGB or ARGB
+	 * depending on their number of bands, and interleaved byte samples as gray, RGB
+	 * or RGBA.
+	 * 
+	 * @param raster
+	 * @return
+	 */
+	public static BufferedImage wrap(Raster raster) {
+		// images need a writable raster at the origin; this shares the data buffer
+		WritableRaster writable = Raster.createWritableRaster(raster.getSampleModel(), raster.getDataBuffer(), null);
+		final int x = raster.getMinX() - raster.getSampleModelTranslateX();
+		final int y = raster.getMinY() - raster.getSampleModelTranslateY();
+		if(x != 0 || y != 0 || raster.getWidth() != writable.getWidth() || raster.getHeight() != writable.getHeight()) {
+			writable = writable.createWritableChild(x, y, raster.getWidth(), raster.getHeight(), 0, 0, null);
+		}
+		
+		return new BufferedImage(getColorModel(raster), writable, false, null);
+	}
+	
+	private static ColorModel getColorModel(Raster raster) {
+		final int bands = raster.getNumBands();
+		
+		if(raster.getSampleModel() instanceof SinglePixelPackedSampleModel && raster.getTransferType() == DataBuffer.TYPE_INT) {
+			int[] masks = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getBitMasks();
+			if(bands == 3) {
+				return new DirectColorModel(24, masks[0], masks[1], masks[2]);
+			}
+			if(bands == 4) {
+				return new DirectColorModel(32, masks[0], masks[1], masks[2], masks[3]);
+			}
+		}
+		
+		if(raster.getSampleModel() instanceof ComponentSampleModel && raster.getTransferType() == DataBuffer.TYPE_BYTE) {
+			if(bands == 1) {
+				return new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+			}
+			if(bands == 3) {
+				return new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+			}
+			if(bands == 4) {
+				return new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+			}
+		}
+		
+		throw new IllegalArgumentException("Unsupported raster layout with " + bands + " bands");
+	}
+
+}
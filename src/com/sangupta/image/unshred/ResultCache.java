@@ -0,0 +1,218 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of unshredding results keyed by the content of the image, so that the
+ * same shredded image submitted again costs a hash of its pixels instead of a
+ * width detection and a full matching.
+ * 
+ * Results are kept in a bounded in-memory tier that evicts the least recently
+ * used entry, backed by an optional on-disk tier holding the binary {@link Manifest}
+ * of each result in a small file.
+ * The number of in-memory entries is read from the system property
+ * <code>image.unshred.results</code> (256 by default, 0 disables the cache) and the
+ * disk tier is enabled by pointing <code>image.unshred.results.dir</code> to a
+ * directory.
+ * 
+ */
+public class ResultCache {
+	
+	private static final ResultCache DEFAULT = createDefault();
+	
+	private final Map<String, Manifest> entries;
+	
+	private final File directory;
+	
+	/**
+	 * @param maxEntries
+	 *            number of results kept in memory
+	 * 
+	 * @param directory
+	 *            directory of the disk tier, or <code>null</code> for none
+	 */
+	public ResultCache(final int maxEntries, File directory) {
+		this.directory = directory;
+		this.entries = new LinkedHashMap<String, Manifest>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Manifest> eldest) {
+				return size() > maxEntries;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Return the cache configured through system properties, or <code>null</code>
+	 * if caching is not enabled. The same instance is shared by the whole process.
+	 * 
+	 * @return
+	 */
+	public static ResultCache getDefault() {
+		return DEFAULT;
+	}
+	
+	private static ResultCache createDefault() {
+		final int maxEntries = Integer.getInteger("image.unshred.results", 256);
+		if(maxEntries <= 0) {
+			return null;
+		}
+		
+		String path = System.getProperty("image.unshred.results.dir");
+		return new ResultCache(maxEntries, path == null || path.length() == 0 ? null : new File(path));
+	}
+	
+	/**
+	 * Whether results computed with the given options can be cached. Only results
+	 * of the {@link DefaultOrdering} engine are, as other engines may carry settings
+	 * of their own that the key cannot capture.
+	 * 
+	 * @param options
+	 * @return
+	 */
+	public static boolean accepts(UnshredOptions options) {
+		return options.isCached() && options.getOrdering().getClass() == DefaultOrdering.class;
+	}
+	
+	/**
+	 * The key of the result of unshredding the given image with the given options:
+	 * a 64-bit hash of the pixels, the dimensions, and every option that changes
+	 * the strip order.
+	 * 
+	 * @param image
+	 * @param options
+	 * @return
+	 */
+	public static String key(BufferedImage image, UnshredOptions options) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		
+		// 64-bit FNV-1a over the packed pixels
+		long hash = 0xcbf29ce484222325l;
+		int[] row = new int[width];
+		for(int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for(int x = 0; x < width; x++) {
+				hash ^= row[x];
+				hash *= 0x100000001b3l;
+			}
+		}
+		
+		final int stripWidth = options.getStripWidth();
+		return Long.toHexString(hash) + "-" + width + "x" + height + "-" + (stripWidth > 0 ? String.valueOf(stripWidth) : "auto")
+				+ "-" + options.getTimeBudget() + "-" + options.getCandidates() + "-" + options.getSearchChecks();
+	}
+	
+	/**
+	 * Look the result up in memory, then on disk.
+	 * 
+	 * @param key
+	 * @return the result, or <code>null</code> if not cached
+	 */
+	public Manifest get(String key) {
+		Manifest entry;
+		synchronized(this.entries) {
+			entry = this.entries.get(key);
+		}
+		
+		if(entry == null && this.directory != null) {
+			entry = read(new File(this.directory, key + ".result"));
+			if(entry != null) {
+				synchronized(this.entries) {
+					this.entries.put(key, entry);
+				}
+			}
+		}
+		
+		UnshredMetrics.getInstance().addResultCacheLookup(entry != null);
+		return entry;
+	}
+	
+	/**
+	 * Add a result to both tiers.
+	 * 
+	 * @param key
+	 * @param entry
+	 */
+	public void put(String key, Manifest entry) {
+		synchronized(this.entries) {
+			this.entries.put(key, entry);
+		}
+		
+		if(this.directory != null) {
+			try {
+				write(new File(this.directory, key + ".result"), entry);
+			} catch(IOException e) {
+				// the disk tier is best effort
+			}
+		}
+	}
+	
+	/**
+	 * Write the entry under a temporary name and rename it once complete, so that
+	 * readers never see a partial file.
+	 * 
+	 */
+	private void write(File file, Manifest entry) throws IOException {
+		if(!this.directory.exists() && !this.directory.mkdirs()) {
+			return;
+		}
+		
+		File tempFile = File.createTempFile("result", ".tmp", this.directory);
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			entry.write(stream);
+		} finally {
+			stream.close();
+		}
+		
+		if(!tempFile.renameTo(file)) {
+			tempFile.delete();
+		}
+	}
+	
+	/**
+	 * Read an entry, or return <code>null</code> if the file is missing or not valid.
+	 * 
+	 */
+	private static Manifest read(File file) {
+		if(!file.exists()) {
+			return null;
+		}
+		
+		try {
+			return Manifest.read(file);
+		} catch(IOException e) {
+			return null;
+		}
+	}
+
+}
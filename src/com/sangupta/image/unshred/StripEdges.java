@@ -0,0 +1,213 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * Holds the left and right edge columns of every strip of an image as flat
+ * primitive planes of 8-bit chroma values. The left edges of all strips live
+ * in one U and one V plane, strip after strip, and the same goes for the right
+ * edges. This keeps an image with many strips down to four arrays instead of a
+ * graph of tiny objects.
+ * 
+ * Given an {@link OffHeapArena}, the four planes are allocated from it instead of
+ * the heap, and stay valid until the arena is closed.
+ * 
+ */
+public class StripEdges {
+	
+	private final int strips;
+	
+	private final int height;
+	
+	private final byte[] leftU;
+	
+	private final byte[] leftV;
+	
+	private final byte[] rightU;
+	
+	private final byte[] rightV;
+	
+	/**
+	 * Off-heap planes, used when the arrays are <code>null</code>
+	 */
+	private final ByteBuffer leftUBuffer;
+	
+	private final ByteBuffer leftVBuffer;
+	
+	private final ByteBuffer rightUBuffer;
+	
+	private final ByteBuffer rightVBuffer;
+	
+	private final OffHeapArena arena;
+	
+	public StripEdges(int strips, int height) {
+		this(strips, height, null);
+	}
+	
+	/**
+	 * @param strips
+	 * @param height
+	 * @param arena
+	 *            arena to allocate the planes from, or <code>null</code> to keep
+	 *            them on the heap
+	 */
+	public StripEdges(int strips, int height, OffHeapArena arena) {
+		this.strips = strips;
+		this.height = height;
+		this.arena = arena;
+		
+		final int size = strips * height;
+		if(arena == null) {
+			this.leftU = new byte[size];
+			this.leftV = new byte[size];
+			this.rightU = new byte[size];
+			this.rightV = new byte[size];
+			this.leftUBuffer = this.leftVBuffer = this.rightUBuffer = this.rightVBuffer = null;
+		} else {
+			this.leftU = this.leftV = this.rightU = this.rightV = null;
+			this.leftUBuffer = arena.allocate(size);
+			this.leftVBuffer = arena.allocate(size);
+			this.rightUBuffer = arena.allocate(size);
+			this.rightVBuffer = arena.allocate(size);
+		}
+	}
+	
+	/**
+	 * Read the edges of all strips of the given width from the image.
+	 * 
+	 * @param image
+	 * @param stripWidth
+	 * @return
+	 */
+	public static StripEdges read(BufferedImage image, int stripWidth) {
+		return read(image, stripWidth, null);
+	}
+	
+	/**
+	 * Read the edges of all strips of the given width from the image into planes
+	 * allocated from the given arena, or the heap if <code>null</code>.
+	 * 
+	 * @param image
+	 * @param stripWidth
+	 * @param arena
+	 * @return
+	 */
+	public static StripEdges read(BufferedImage image, int stripWidth, OffHeapArena arena) {
+		final int height = image.getHeight();
+		final int strips = image.getWidth() / stripWidth;
+		
+		StripEdges edges = new StripEdges(strips, height, arena);
+		int[] column = new int[height];
+		for(int strip = 0; strip < strips; strip++) {
+			final int leftX = strip * stripWidth;
+			
+			image.getRGB(leftX, 0, 1, height, column, 0, 1);
+			edges.setLeft(strip, column);
+			
+			image.getRGB(leftX + stripWidth - 1, 0, 1, height, column, 0, 1);
+			edges.setRight(strip, column);
+		}
+		
+		return edges;
+	}
+	
+	/**
+	 * Set the left edge of the given strip from packed RGB values.
+	 * 
+	 * @param strip
+	 * @param column
+	 */
+	public void setLeft(int strip, int[] column) {
+		if(this.arena == null) {
+			fill(this.leftU, this.leftV, strip * this.height, column);
+		} else {
+			fill(this.leftUBuffer, this.leftVBuffer, strip * this.height, column);
+		}
+	}
+	
+	/**
+	 * Set the right edge of the given strip from packed RGB values.
+	 * 
+	 * @param strip
+	 * @param column
+	 */
+	public void setRight(int strip, int[] column) {
+		if(this.arena == null) {
+			fill(this.rightU, this.rightV, strip * this.height, column);
+		} else {
+			fill(this.rightUBuffer, this.rightVBuffer, strip * this.height, column);
+		}
+	}
+	
+	private void fill(byte[] u, byte[] v, int offset, int[] column) {
+		for(int y = 0; y < this.height; y++) {
+			final int value = column[y];
+			u[offset + y] = (byte) RGB.u(value);
+			v[offset + y] = (byte) RGB.v(value);
+		}
+	}
+	
+	private void fill(ByteBuffer u, ByteBuffer v, int offset, int[] column) {
+		this.arena.checkOpen();
+		for(int y = 0; y < this.height; y++) {
+			final int value = column[y];
+			u.put(offset + y, (byte) RGB.u(value));
+			v.put(offset + y, (byte) RGB.v(value));
+		}
+	}
+	
+	public PixelColumn getLeft(int strip) {
+		if(this.arena == null) {
+			return new PixelColumn(this.leftU, this.leftV, strip * this.height, this.height);
+		}
+		
+		this.arena.checkOpen();
+		return new PixelColumn(this.leftUBuffer, this.leftVBuffer, strip * this.height, this.height, this.arena);
+	}
+	
+	public PixelColumn getRight(int strip) {
+		if(this.arena == null) {
+			return new PixelColumn(this.rightU, this.rightV, strip * this.height, this.height);
+		}
+		
+		this.arena.checkOpen();
+		return new PixelColumn(this.rightUBuffer, this.rightVBuffer, strip * this.height, this.height, this.arena);
+	}
+	
+	/**
+	 * Whether the planes are kept off-heap.
+	 * 
+	 * @return
+	 */
+	public boolean isOffHeap() {
+		return this.arena != null;
+	}
+
+	public int getStrips() {
+		return strips;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+}
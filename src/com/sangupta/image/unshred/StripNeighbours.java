@@ -0,0 +1,74 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.BitSet;
+
+/**
+ * The neighbours of every strip on one side, ranked best first, as walked by
+ * {@link GreedyOrdering}.
+ * 
+ */
+public abstract class StripNeighbours {
+	
+	/**
+	 * Return the neighbour of the given rank of a strip, the best one being of rank
+	 * zero, or -1 if the strip has no neighbour of that rank.
+	 * 
+	 * @param strip
+	 * @param rank
+	 * @return
+	 */
+	public abstract int get(int strip, int rank);
+	
+	/**
+	 * Cost of placing the neighbour of the given rank next to the strip.
+	 * 
+	 * @param strip
+	 * @param rank
+	 * @return
+	 */
+	public abstract double cost(int strip, int rank);
+	
+	/**
+	 * Number of strips.
+	 * 
+	 * @return
+	 */
+	public abstract int getSize();
+	
+	/**
+	 * Return the rank of the best neighbour of the strip that is not marked as
+	 * used, starting the search at the given rank, or -1 if all are used.
+	 * 
+	 * @param strip
+	 * @param rank
+	 * @param used
+	 * @return
+	 */
+	public int next(int strip, int rank, BitSet used) {
+		for(int neighbour = get(strip, rank); neighbour >= 0; neighbour = get(strip, ++rank)) {
+			if(!used.get(neighbour)) {
+				return rank;
+			}
+		}
+		return -1;
+	}
+
+}
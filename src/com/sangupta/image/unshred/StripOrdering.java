@@ -0,0 +1,42 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+/**
+ * Contract for an engine that computes the order of strips from their pairwise costs.
+ * 
+ */
+public interface StripOrdering {
+	
+	/**
+	 * Compute an order of all strips, returning the best order found within the
+	 * given time budget. The returned array holds the strip index to be placed at
+	 * each position, from left to right.
+	 * 
+	 * @param costs
+	 *            the pairwise strip costs
+	 * 
+	 * @param budgetMillis
+	 *            the wall-clock budget in milliseconds
+	 * 
+	 * @return
+	 */
+	public int[] order(CostMatrix costs, long budgetMillis);
+
+}
@@ -0,0 +1,108 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+/**
+ * Detects the strip width of a shredded image from the periodicity of its column
+ * difference profile (see {@link ColumnProfile}).
+ * 
+ * Every divisor <code>w</code> of the image width is scored with a comb over the
+ * profile: the profile values at the boundaries <code>k * w - 1</code> are compared
+ * with the rest of the profile, as a t-statistic. Multiples of the true width
+ * select fewer boundaries and divisors of it select non-boundaries, so both score
+ * lower than the true width.
+ * 
+ */
+public class StripWidthDetector {
+	
+	/**
+	 * Minimum score for a width to be accepted
+	 */
+	private static final double MIN_SCORE = 3.0;
+	
+	/**
+	 * Find the strip width for the given profile.
+	 * 
+	 * @param profile
+	 *            the column difference profile of the image
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * 
+	 * @return the detected strip width, or -1 if no width stands out
+	 */
+	public static int detect(double[] profile, int width) {
+		final int length = profile.length;
+		if(length < 2) {
+			return -1;
+		}
+		
+		double sum = 0, squares = 0;
+		for(int index = 0; index < length; index++) {
+			sum += profile[index];
+			squares += profile[index] * profile[index];
+		}
+		
+		final double variance = (squares - sum * sum / length) / length;
+		if(variance <= 0) {
+			return -1;
+		}
+		final double deviation = Math.sqrt(variance);
+		
+		int bestWidth = -1;
+		double bestScore = MIN_SCORE;
+		
+		// at least two strips are needed to have a boundary
+		for(int stripWidth = 2; stripWidth <= width / 2; stripWidth++) {
+			if(width % stripWidth != 0) {
+				continue;
+			}
+			
+			final double score = score(profile, stripWidth, sum, deviation);
+			if(score > bestScore) {
+				bestScore = score;
+				bestWidth = stripWidth;
+			}
+		}
+		
+		return bestWidth;
+	}
+	
+	/**
+	 * Comb score of the given strip width.
+	 * 
+	 */
+	private static double score(double[] profile, int stripWidth, double sum, double deviation) {
+		double boundarySum = 0;
+		int boundaries = 0;
+		for(int index = stripWidth - 1; index < profile.length; index += stripWidth) {
+			boundarySum += profile[index];
+			boundaries++;
+		}
+		
+		final int others = profile.length - boundaries;
+		if(boundaries == 0 || others == 0) {
+			return 0;
+		}
+		
+		final double difference = boundarySum / boundaries - (sum - boundarySum) / others;
+		return difference / deviation * Math.sqrt(boundaries);
+	}
+
+}
@@ -0,0 +1,174 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide counters and per-phase timers of all unshred runs. The single
+ * instance is registered with the platform MBean server as
+ * <code>com.sangupta.image.unshred:type=UnshredMetrics</code> the first time
+ * it is used.
+ * 
+ */
+public class UnshredMetrics implements UnshredMetricsMBean {
+	
+	public static final String OBJECT_NAME = "com.sangupta.image.unshred:type=UnshredMetrics";
+	
+	private static final UnshredMetrics INSTANCE = register(new UnshredMetrics());
+	
+	private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+	
+	private final AtomicLong imagesUnshredded = new AtomicLong();
+	
+	private final AtomicLong edgeComparisons = new AtomicLong();
+	
+	private final AtomicLong pixelsDecoded = new AtomicLong();
+	
+	private final AtomicLong bytesWritten = new AtomicLong();
+	
+	private final AtomicLong resultCacheHits = new AtomicLong();
+	
+	private final AtomicLong resultCacheMisses = new AtomicLong();
+	
+	public static UnshredMetrics getInstance() {
+		return INSTANCE;
+	}
+	
+	private static UnshredMetrics register(UnshredMetrics metrics) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if(!server.isRegistered(name)) {
+				server.registerMBean(metrics, name);
+			}
+		} catch(Exception e) {
+			// metrics still work in process without JMX
+		}
+		
+		return metrics;
+	}
+	
+	public void addPhase(Phase phase, long elapsedNanos) {
+		this.phaseNanos.addAndGet(phase.ordinal(), elapsedNanos);
+	}
+	
+	public void addImageUnshredded() {
+		this.imagesUnshredded.incrementAndGet();
+	}
+	
+	public void addEdgeComparisons(long comparisons) {
+		this.edgeComparisons.addAndGet(comparisons);
+	}
+	
+	public void addPixelsDecoded(long pixels) {
+		this.pixelsDecoded.addAndGet(pixels);
+	}
+	
+	public void addBytesWritten(long bytes) {
+		this.bytesWritten.addAndGet(bytes);
+	}
+	
+	public void addResultCacheLookup(boolean hit) {
+		(hit ? this.resultCacheHits : this.resultCacheMisses).incrementAndGet();
+	}
+	
+	private double getMillis(Phase phase) {
+		return this.phaseNanos.get(phase.ordinal()) / 1000000.0;
+	}
+
+	@Override
+	public long getImagesUnshredded() {
+		return this.imagesUnshredded.get();
+	}
+
+	@Override
+	public long getEdgeComparisons() {
+		return this.edgeComparisons.get();
+	}
+
+	@Override
+	public long getPixelsDecoded() {
+		return this.pixelsDecoded.get();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return this.bytesWritten.get();
+	}
+
+	@Override
+	public long getResultCacheHits() {
+		return this.resultCacheHits.get();
+	}
+
+	@Override
+	public long getResultCacheMisses() {
+		return this.resultCacheMisses.get();
+	}
+
+	@Override
+	public double getDecodeMillis() {
+		return getMillis(Phase.DECODE);
+	}
+
+	@Override
+	public double getDetectMillis() {
+		return getMillis(Phase.DETECT);
+	}
+
+	@Override
+	public double getExtractMillis() {
+		return getMillis(Phase.EXTRACT);
+	}
+
+	@Override
+	public double getMatchMillis() {
+		return getMillis(Phase.MATCH);
+	}
+
+	@Override
+	public double getReconstructMillis() {
+		return getMillis(Phase.RECONSTRUCT);
+	}
+
+	@Override
+	public double getEncodeMillis() {
+		return getMillis(Phase.ENCODE);
+	}
+
+	@Override
+	public void reset() {
+		for(int index = 0; index < this.phaseNanos.length(); index++) {
+			this.phaseNanos.set(index, 0);
+		}
+		this.imagesUnshredded.set(0);
+		this.edgeComparisons.set(0);
+		this.pixelsDecoded.set(0);
+		this.bytesWritten.set(0);
+		this.resultCacheHits.set(0);
+		this.resultCacheMisses.set(0);
+	}
+
+}
@@ -0,0 +1,57 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+/**
+ * Management interface of {@link UnshredMetrics}, as exposed over JMX.
+ * 
+ */
+public interface UnshredMetricsMBean {
+	
+	public long getImagesUnshredded();
+	
+	public long getEdgeComparisons();
+	
+	public long getPixelsDecoded();
+	
+	public long getBytesWritten();
+	
+	public long getResultCacheHits();
+	
+	public long getResultCacheMisses();
+	
+	public double getDecodeMillis();
+	
+	public double getDetectMillis();
+	
+	public double getExtractMillis();
+	
+	public double getMatchMillis();
+	
+	public double getReconstructMillis();
+	
+	public double getEncodeMillis();
+	
+	/**
+	 * Reset all counters and timers to zero.
+	 * 
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,210 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.io.File;
+
+/**
+ * Options for unshredding an image through the in-memory API of {@link ImageUnshred}.
+ * 
+ */
+public class UnshredOptions {
+	
+	/**
+	 * Default wall-clock budget for ordering the strips, in milliseconds
+	 */
+	public static final long DEFAULT_TIME_BUDGET = 2000;
+	
+	/**
+	 * Default number of best neighbours certified per strip by the coarse-to-fine
+	 * matcher, read from the system property <code>image.unshred.candidates</code>
+	 */
+	public static final int DEFAULT_CANDIDATES = Integer.getInteger("image.unshred.candidates", 8);
+	
+	/**
+	 * Default directory to map off-heap memory from, read from the system property
+	 * <code>image.unshred.offheap.dir</code>, <code>null</code> for direct memory
+	 */
+	public static final File DEFAULT_OFF_HEAP_DIRECTORY = getDirectory("image.unshred.offheap.dir");
+	
+	/**
+	 * Whether edges and cost matrices are kept off-heap by default, read from the
+	 * system property <code>image.unshred.offheap</code> or implied by a directory
+	 */
+	public static final boolean DEFAULT_OFF_HEAP = Boolean.getBoolean("image.unshred.offheap") || DEFAULT_OFF_HEAP_DIRECTORY != null;
+	
+	private int stripWidth = -1;
+	
+	private long timeBudget = DEFAULT_TIME_BUDGET;
+	
+	private int candidates = DEFAULT_CANDIDATES;
+	
+	private int searchChecks = ApproximateOrdering.DEFAULT_CHECKS;
+	
+	private StripOrdering ordering = new DefaultOrdering();
+	
+	private boolean reconstruct = true;
+	
+	private boolean cached = true;
+	
+	private boolean offHeap = DEFAULT_OFF_HEAP;
+	
+	private File offHeapDirectory = DEFAULT_OFF_HEAP_DIRECTORY;
+	
+	private static File getDirectory(String property) {
+		String path = System.getProperty(property);
+		return path == null || path.length() == 0 ? null : new File(path);
+	}
+
+	public int getStripWidth() {
+		return stripWidth;
+	}
+
+	/**
+	 * Set the width of the strips, or -1 to auto-detect it. Defaults to -1.
+	 * 
+	 * @param stripWidth
+	 */
+	public void setStripWidth(int stripWidth) {
+		this.stripWidth = stripWidth;
+	}
+
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Set the wall-clock budget for ordering the strips, in milliseconds. Images
+	 * of {@link ApproximateOrdering#DEFAULT_MIN_STRIPS} strips or more are ordered
+	 * by neighbour search, which runs to completion and ignores the budget.
+	 * 
+	 * @param timeBudget
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	public int getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Set the number of best neighbours per strip that are compared at full
+	 * resolution on tall images, or 0 to always compare every pair of strips.
+	 * 
+	 * @param candidates
+	 */
+	public void setCandidates(int candidates) {
+		this.candidates = candidates;
+	}
+
+	public int getSearchChecks() {
+		return searchChecks;
+	}
+
+	/**
+	 * Set the number of signature distances computed per neighbour search when
+	 * there are too many strips for a full cost matrix. Higher values find the
+	 * best neighbours more often but take longer. Must be at least 1.
+	 * 
+	 * @param searchChecks
+	 */
+	public void setSearchChecks(int searchChecks) {
+		if(searchChecks < 1) {
+			throw new IllegalArgumentException("Number of search checks must be at least 1: " + searchChecks);
+		}
+		
+		this.searchChecks = searchChecks;
+	}
+
+	public StripOrdering getOrdering() {
+		return ordering;
+	}
+
+	/**
+	 * Set the engine used to order the strips. Defaults to {@link DefaultOrdering}.
+	 * Images of {@link ApproximateOrdering#DEFAULT_MIN_STRIPS} strips or more have
+	 * no cost matrix for an engine to work on, and are always ordered by
+	 * {@link ApproximateOrdering} instead.
+	 * 
+	 * @param ordering
+	 */
+	public void setOrdering(StripOrdering ordering) {
+		this.ordering = ordering;
+	}
+
+	public boolean isReconstruct() {
+		return reconstruct;
+	}
+
+	/**
+	 * Set whether the reconstructed image is to be built, or only the strip order
+	 * computed. Defaults to <code>true</code>.
+	 * 
+	 * @param reconstruct
+	 */
+	public void setReconstruct(boolean reconstruct) {
+		this.reconstruct = reconstruct;
+	}
+
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * Set whether the result may be served from, and is added to, the
+	 * {@link ResultCache}. Defaults to <code>true</code>, the cache itself being
+	 * configured through system properties. Results are only ever cached for the
+	 * {@link DefaultOrdering} engine.
+	 * 
+	 * @param cached
+	 */
+	public void setCached(boolean cached) {
+		this.cached = cached;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Set whether the strip edges and the cost matrix are kept off-heap, in memory
+	 * released as soon as the strips are ordered.
+	 * 
+	 * @param offHeap
+	 */
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	public File getOffHeapDirectory() {
+		return offHeapDirectory;
+	}
+
+	/**
+	 * Set the directory of the temporary files off-heap memory is mapped from, or
+	 * <code>null</code> to use direct memory. Only used when off-heap.
+	 * 
+	 * @param offHeapDirectory
+	 */
+	public void setOffHeapDirectory(File offHeapDirectory) {
+		this.offHeapDirectory = offHeapDirectory;
+	}
+
+}
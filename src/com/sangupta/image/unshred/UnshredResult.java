@@ -0,0 +1,99 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The outcome of unshredding one image.
+ * 
+ */
+public class UnshredResult {
+	
+	private final int stripWidth;
+	
+	private final int[] order;
+	
+	private final double[] seamCosts;
+	
+	private final BufferedImage reconstructed;
+	
+	private final PhaseTimings timings;
+	
+	public UnshredResult(int stripWidth, int[] order, double[] seamCosts, BufferedImage reconstructed, PhaseTimings timings) {
+		this.stripWidth = stripWidth;
+		this.order = order;
+		this.seamCosts = seamCosts;
+		this.reconstructed = reconstructed;
+		this.timings = timings;
+	}
+
+	/**
+	 * The strip width, as given or as detected.
+	 * 
+	 * @return
+	 */
+	public int getStripWidth() {
+		return stripWidth;
+	}
+
+	/**
+	 * The strip permutation: the index of the source strip placed at each position
+	 * of the reconstructed image, from left to right.
+	 * 
+	 * @return
+	 */
+	public int[] getOrder() {
+		return order;
+	}
+
+	/**
+	 * The cost of each seam of the reconstructed image: entry <code>k</code> is the
+	 * edge distance between the strips at positions <code>k</code> and <code>k + 1</code>.
+	 * 
+	 * @return
+	 */
+	public double[] getSeamCosts() {
+		return seamCosts;
+	}
+
+	/**
+	 * The reconstructed image, or <code>null</code> if it was not requested.
+	 * 
+	 * @return
+	 */
+	public BufferedImage getReconstructed() {
+		return reconstructed;
+	}
+
+	/**
+	 * The strip width, order and seam costs as a manifest that can be written out
+	 * instead of the reconstructed image.
+	 * 
+	 * @return
+	 */
+	public Manifest getManifest() {
+		return new Manifest(stripWidth, order, seamCosts);
+	}
+
+	public PhaseTimings getTimings() {
+		return timings;
+	}
+
+}
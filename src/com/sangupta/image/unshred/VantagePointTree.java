@@ -0,0 +1,438 @@
+/**
+ *
+ * Image Unshredder
+ * Copyright (c) 2011, Sandeep Gupta
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.image.unshred;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * A vantage-point tree over one side of the edge signatures of all strips, used
+ * to find the edges closest to a given edge without comparing it to every strip.
+ * 
+ * The tree is laid out in a single array of strips: the node of a range is its
+ * first strip, the vantage point, followed by the strips closer to it than the
+ * median distance and then by the strips further away. Searches visit the ranges
+ * best first and are bounded by a number of distance computations: with enough
+ * of them the search is exact, and fewer trade recall for speed.
+ * 
+ */
+public class VantagePointTree {
+	
+	/**
+	 * Ranges this small are scanned instead of split
+	 */
+	private static final int LEAF_SIZE = 8;
+	
+	private final EdgeSignature signature;
+	
+	/**
+	 * Whether the tree holds the right edges of the strips, or the left ones
+	 */
+	private final boolean right;
+	
+	private final int[] strips;
+	
+	/**
+	 * Median distance from the vantage point of the range starting at each position
+	 */
+	private final double[] radii;
+	
+	/**
+	 * End of the inner half of the range starting at each position
+	 */
+	private final int[] splits;
+	
+	/**
+	 * Build the tree over the left or right edges of all strips.
+	 * 
+	 * @param signature
+	 * @param right
+	 * @param seed
+	 *            seed for the choice of vantage points
+	 */
+	public VantagePointTree(EdgeSignature signature, boolean right, long seed) {
+		this(signature, right, all(signature.getStrips()), seed);
+	}
+	
+	/**
+	 * Build the tree over the left or right edges of the given strips.
+	 * 
+	 * @param signature
+	 * @param right
+	 * @param strips
+	 *            the strips to index, the array is taken over by the tree
+	 * 
+	 * @param seed
+	 *            seed for the choice of vantage points
+	 */
+	public VantagePointTree(EdgeSignature signature, boolean right, int[] strips, long seed) {
+		this.signature = signature;
+		this.right = right;
+		this.strips = strips;
+		
+		final int size = strips.length;
+		this.radii = new double[size];
+		this.splits = new int[size];
+		build(0, size, new double[size], new Random(seed));
+	}
+	
+	private static int[] all(int size) {
+		int[] strips = new int[size];
+		for(int strip = 0; strip < size; strip++) {
+			strips[strip] = strip;
+		}
+		return strips;
+	}
+	
+	private void build(int from, int to, double[] distances, Random random) {
+		if(to - from <= LEAF_SIZE) {
+			return;
+		}
+		
+		swap(from, from + random.nextInt(to - from), distances);
+		final int vantage = this.strips[from];
+		for(int index = from + 1; index < to; index++) {
+			distances[index] = distance(vantage, this.right, this.strips[index]);
+		}
+		
+		final int middle = (from + 1 + to) >>> 1;
+		select(from + 1, to - 1, middle, distances);
+		this.radii[from] = distances[middle];
+		this.splits[from] = middle;
+		
+		build(from + 1, middle, distances, random);
+		build(middle, to, distances, random);
+	}
+	
+	/**
+	 * Find the strips whose edges are closest to the given edge, skipping the
+	 * excluded strips.
+	 * 
+	 * @param strip
+	 *            the strip whose edge is searched for
+	 * 
+	 * @param right
+	 *            whether it is the right edge of the strip, or the left one
+	 * 
+	 * @param count
+	 *            number of strips to find
+	 * 
+	 * @param checks
+	 *            maximum number of distances to compute
+	 * 
+	 * @param excluded
+	 *            strips not to return, may be <code>null</code>
+	 * 
+	 * @return the strips found, closest first
+	 */
+	public int[] search(int strip, boolean right, int count, int checks, BitSet excluded) {
+		Search search = new Search(strip, right, count, checks, excluded);
+		search.run();
+		return search.sorted();
+	}
+	
+	/**
+	 * Number of strips in the tree.
+	 * 
+	 * @return
+	 */
+	public int getSize() {
+		return this.strips.length;
+	}
+	
+	private double distance(int strip, boolean right, int other) {
+		return this.signature.distance(strip, right, other, this.right);
+	}
+	
+	/**
+	 * Quick-select the range so that the given position holds the element that
+	 * would be there if the range were sorted by distance.
+	 * 
+	 */
+	private void select(int low, int high, int nth, double[] distances) {
+		while(low < high) {
+			final double pivot = distances[(low + high) >>> 1];
+			int i = low, j = high;
+			while(i <= j) {
+				while(distances[i] < pivot) {
+					i++;
+				}
+				while(distances[j] > pivot) {
+					j--;
+				}
+				if(i <= j) {
+					swap(i++, j--, distances);
+				}
+			}
+			
+			if(nth <= j) {
+				high = j;
+			} else if(nth >= i) {
+				low = i;
+			} else {
+				return;
+			}
+		}
+	}
+	
+	private void swap(int first, int second, double[] distances) {
+		final int strip = this.strips[first];
+		this.strips[first] = this.strips[second];
+		this.strips[second] = strip;
+		
+		final double distance = distances[first];
+		distances[first] = distances[second];
+		distances[second] = distance;
+	}
+	
+	/**
+	 * State of a single k-nearest search: the best strips so far, in a max-heap
+	 * on their distance.
+	 * 
+	 */
+	private class Search {
+		
+		private final int strip;
+		
+		private final boolean right;
+		
+		private final int count;
+		
+		private final BitSet excluded;
+		
+		private final int[] found;
+		
+		private final double[] distances;
+		
+		private int size = 0;
+		
+		private int checks;
+		
+		Search(int strip, boolean right, int count, int checks, BitSet excluded) {
+			this.strip = strip;
+			this.right = right;
+			this.count = count;
+			this.checks = checks;
+			this.excluded = excluded;
+			this.found = new int[count];
+			this.distances = new double[count];
+		}
+		
+		/**
+		 * Distance within which a strip would still make it into the result.
+		 * 
+		 * @return
+		 */
+		double radius() {
+			return this.size < this.count ? Double.POSITIVE_INFINITY : this.distances[0];
+		}
+		
+		/**
+		 * Visit the ranges of the tree best first: a range waits in a queue with the
+		 * smallest distance any of its strips can be at, by the triangle inequality,
+		 * and the search stops when no range can hold a closer strip or when the
+		 * checks run out.
+		 * 
+		 */
+		void run() {
+			RangeQueue queue = new RangeQueue();
+			queue.add(0, 0, strips.length);
+			while(!queue.isEmpty() && this.checks > 0) {
+				final double bound = queue.bound();
+				final int from = queue.from(), to = queue.to();
+				queue.remove();
+				if(bound >= radius()) {
+					break;
+				}
+				
+				if(to - from <= LEAF_SIZE) {
+					for(int index = from; index < to && this.checks > 0; index++) {
+						consider(strips[index]);
+					}
+					continue;
+				}
+				
+				final double distance = consider(strips[from]);
+				final double radius = radii[from];
+				final int middle = splits[from];
+				queue.add(Math.max(bound, distance - radius), from + 1, middle);
+				queue.add(Math.max(bound, radius - distance), middle, to);
+			}
+		}
+		
+		private double consider(int other) {
+			this.checks--;
+			final double distance = VantagePointTree.this.distance(this.strip, this.right, other);
+			if(other == this.strip || (this.excluded != null && this.excluded.get(other)) || distance >= radius()) {
+				return distance;
+			}
+			
+			// replace the furthest strip found so far
+			int index;
+			if(this.size < this.count) {
+				index = this.size++;
+				while(index > 0 && this.distances[(index - 1) >>> 1] < distance) {
+					this.found[index] = this.found[(index - 1) >>> 1];
+					this.distances[index] = this.distances[(index - 1) >>> 1];
+					index = (index - 1) >>> 1;
+				}
+			} else {
+				index = 0;
+				while(true) {
+					int child = 2 * index + 1;
+					if(child >= this.size) {
+						break;
+					}
+					if(child + 1 < this.size && this.distances[child + 1] > this.distances[child]) {
+						child++;
+					}
+					if(this.distances[child] <= distance) {
+						break;
+					}
+					this.found[index] = this.found[child];
+					this.distances[index] = this.distances[child];
+					index = child;
+				}
+			}
+			this.found[index] = other;
+			this.distances[index] = distance;
+			return distance;
+		}
+		
+		int[] sorted() {
+			int[] result = new int[this.size];
+			for(int index = this.size - 1; index >= 0; index--) {
+				result[index] = this.found[0];
+				
+				// pop the furthest strip
+				final int last = this.found[index];
+				final double distance = this.distances[index];
+				int slot = 0;
+				while(true) {
+					int child = 2 * slot + 1;
+					if(child >= index) {
+						break;
+					}
+					if(child + 1 < index && this.distances[child + 1] > this.distances[child]) {
+						child++;
+					}
+					if(this.distances[child] <= distance) {
+						break;
+					}
+					this.found[slot] = this.found[child];
+					this.distances[slot] = this.distances[child];
+					slot = child;
+				}
+				this.found[slot] = last;
+				this.distances[slot] = distance;
+			}
+			return result;
+		}
+		
+	}
+
+	/**
+	 * A min-heap of ranges of the tree keyed by a distance bound.
+	 * 
+	 */
+	private static class RangeQueue {
+		
+		private double[] bounds = new double[64];
+		
+		private int[] froms = new int[64];
+		
+		private int[] tos = new int[64];
+		
+		private int size = 0;
+		
+		void add(double bound, int from, int to) {
+			if(from >= to) {
+				return;
+			}
+			
+			if(this.size == this.bounds.length) {
+				this.bounds = Arrays.copyOf(this.bounds, 2 * this.size);
+				this.froms = Arrays.copyOf(this.froms, 2 * this.size);
+				this.tos = Arrays.copyOf(this.tos, 2 * this.size);
+			}
+			
+			int index = this.size++;
+			while(index > 0) {
+				final int parent = (index - 1) >>> 1;
+				if(this.bounds[parent] <= bound) {
+					break;
+				}
+				move(parent, index);
+				index = parent;
+			}
+			set(index, bound, from, to);
+		}
+		
+		boolean isEmpty() {
+			return this.size == 0;
+		}
+		
+		double bound() {
+			return this.bounds[0];
+		}
+		
+		int from() {
+			return this.froms[0];
+		}
+		
+		int to() {
+			return this.tos[0];
+		}
+		
+		void remove() {
+			final int last = --this.size;
+			final double bound = this.bounds[last];
+			final int from = this.froms[last], to = this.tos[last];
+			int index = 0;
+			while(true) {
+				int child = 2 * index + 1;
+				if(child >= last) {
+					break;
+				}
+				if(child + 1 < last && this.bounds[child + 1] < this.bounds[child]) {
+					child++;
+				}
+				if(this.bounds[child] >= bound) {
+					break;
+				}
+				move(child, index);
+				index = child;
+			}
+			set(index, bound, from, to);
+		}
+		
+		private void move(int source, int target) {
+			set(target, this.bounds[source], this.froms[source], this.tos[source]);
+		}
+		
+		private void set(int index, double bound, int from, int to) {
+			this.bounds[index] = bound;
+			this.froms[index] = from;
+			this.tos[index] = to;
+		}
+		
+	}
+
+}